@@ -6,6 +6,7 @@ plugins {
     id("org.jetbrains.kotlin.jvm") version "1.6.21"
     id("com.gradle.plugin-publish") version "1.0.0"
     id("io.gitlab.arturbosch.detekt") version "1.21.0"
+    id("me.champeau.jmh") version "0.6.8"
     id("net.researchgate.release") version "3.0.2"
     id("com.github.breadmoirai.github-release") version "2.4.1"
 }
@@ -51,12 +52,15 @@ dependencies {
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.5.2")
     detektPlugins("io.gitlab.arturbosch.detekt:detekt-formatting:1.21.0")
     testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
+    testImplementation("org.eclipse.jetty.http2:http2-server:9.4.53.v20231009")
+    jmhImplementation("org.eclipse.jetty.http2:http2-server:9.4.53.v20231009")
 
     // External dependencies
     implementation("org.apache.commons:commons-lang3:3.12.0")
     implementation("org.apache.sshd:sshd-sftp:2.8.0")
     implementation("org.apache.httpcomponents:httpclient:4.5.13")
     implementation("org.apache.httpcomponents:httpmime:4.5.13")
+    implementation("org.apache.httpcomponents:httpasyncclient:4.1.5")
     implementation("com.fasterxml.jackson.module:jackson-module-kotlin:2.13.1")
     implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml:2.13.1")
 
@@ -101,6 +105,13 @@ tasks {
     }
 }
 
+jmh {
+    zip64.set(true)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    (project.findProperty("jmh.includes") ?: "").toString().takeIf { it.isNotBlank() }?.let { includes.add(it) }
+}
+
 detekt {
     config.from(file("detekt.yml"))
     parallel = true
@@ -0,0 +1,30 @@
+package com.cognifide.gradle.common.file.transfer
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+open class FileUtilsBenchmark {
+
+    @Benchmark
+    fun splitUrl() = FileUtils.splitUrl("https://repo.example.com/content/groups/public/com/example/app/1.0.0/app-1.0.0.zip")
+
+    @Benchmark
+    fun splitUrlWindowsPath() = FileUtils.splitUrl("""C:\Users\user\projects\app\build\distributions\app-1.0.0.zip""")
+
+    @Benchmark
+    fun nameFromUrl() = FileUtils.nameFromUrl("sftp://storage.example.com/packages/app-1.0.0.zip")
+}
@@ -0,0 +1,115 @@
+package com.cognifide.gradle.common.file.transfer.sftp
+
+import org.apache.sshd.client.SshClient
+import org.apache.sshd.client.session.ClientSession
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory
+import org.apache.sshd.core.CoreModuleProperties
+import org.apache.sshd.server.SshServer
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider
+import org.apache.sshd.sftp.client.SftpClient
+import org.apache.sshd.sftp.client.SftpClientFactory
+import org.apache.sshd.sftp.server.SftpSubsystemFactory
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Compares SFTP transfers with different number of requests in flight (read-ahead) and request sizes
+ * using local embedded SSH server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+open class SftpTransferBenchmark {
+
+    @Param("1", "16", "64")
+    var readAhead: Int = 1
+
+    @Param("32768", "65536")
+    var bufferSize: Int = SftpClient.IO_BUFFER_SIZE
+
+    private lateinit var rootDir: File
+
+    private lateinit var target: File
+
+    private lateinit var server: SshServer
+
+    private lateinit var client: SshClient
+
+    private lateinit var session: ClientSession
+
+    private lateinit var sftp: SftpClient
+
+    @Setup
+    fun setup() {
+        rootDir = Files.createTempDirectory("sftp-benchmark").toFile()
+        rootDir.resolve(FILE_NAME).writeBytes(Random(0).nextBytes(FILE_SIZE))
+        target = File.createTempFile("sftp-benchmark", ".bin")
+
+        server = SshServer.setUpDefaultServer().apply {
+            port = 0
+            keyPairProvider = SimpleGeneratorHostKeyProvider(rootDir.resolve("hostkey.ser").toPath())
+            setPasswordAuthenticator { user, password, _ -> user == USER && password == PASSWORD }
+            subsystemFactories = listOf(SftpSubsystemFactory())
+            fileSystemFactory = VirtualFileSystemFactory(rootDir.toPath())
+            start()
+        }
+        client = SshClient.setUpDefaultClient().apply { start() }
+        session = client.connect(USER, "localhost", server.port).verify(TIMEOUT).session.apply {
+            addPasswordIdentity(PASSWORD)
+            auth().verify(TIMEOUT)
+            CoreModuleProperties.WINDOW_SIZE.set(this, readAhead.toLong() * bufferSize)
+        }
+        sftp = SftpClientFactory.instance().createSftpClient(session)
+    }
+
+    @TearDown
+    fun tearDown() {
+        sftp.close()
+        session.close()
+        client.stop()
+        server.stop()
+        target.delete()
+        rootDir.deleteRecursively()
+    }
+
+    @Benchmark
+    fun download(): Long = sftp.read("/$FILE_NAME", bufferSize).use { input ->
+        target.outputStream().use { input.copyTo(it, bufferSize) }
+    }
+
+    @Benchmark
+    fun upload(): Long = sftp.write("/$UPLOAD_FILE_NAME", bufferSize).use { output ->
+        rootDir.resolve(FILE_NAME).inputStream().use { it.copyTo(output, bufferSize) }
+    }
+
+    companion object {
+        const val FILE_NAME = "file.bin"
+
+        const val UPLOAD_FILE_NAME = "upload.bin"
+
+        const val FILE_SIZE = 16 * 1024 * 1024
+
+        const val USER = "benchmark"
+
+        const val PASSWORD = "benchmark"
+
+        const val TIMEOUT = 10_000L
+    }
+}
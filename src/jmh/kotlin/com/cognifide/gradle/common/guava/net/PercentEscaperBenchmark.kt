@@ -0,0 +1,38 @@
+package com.cognifide.gradle.common.guava.net
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+open class PercentEscaperBenchmark {
+
+    private val fragmentEscaper = UrlEscapers.urlFragmentEscaper()
+
+    private val formEscaper = UrlEscapers.urlFormParameterEscaper()
+
+    private val plain = "/content/dam/example/assets/image.png"
+
+    private val special = "/content/dam/example/assets/zażółć gęślą jaźń #1 (copy).png"
+
+    @Benchmark
+    fun escapeFragmentPlain() = fragmentEscaper.escape(plain)
+
+    @Benchmark
+    fun escapeFragmentSpecial() = fragmentEscaper.escape(special)
+
+    @Benchmark
+    fun escapeFormParameter() = formEscaper.escape(special)
+}
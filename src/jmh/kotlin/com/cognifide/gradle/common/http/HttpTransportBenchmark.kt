@@ -0,0 +1,121 @@
+package com.cognifide.gradle.common.http
+
+import org.apache.http.client.methods.HttpGet
+import org.apache.http.impl.client.CloseableHttpClient
+import org.apache.http.impl.client.HttpClientBuilder
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager
+import org.apache.http.util.EntityUtils
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory
+import org.eclipse.jetty.server.HttpConfiguration
+import org.eclipse.jetty.server.HttpConnectionFactory
+import org.eclipse.jetty.server.Request
+import org.eclipse.jetty.server.Server
+import org.eclipse.jetty.server.ServerConnector
+import org.eclipse.jetty.server.handler.AbstractHandler
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+
+/**
+ * Compares sending many concurrent requests (like health checks) to same origin using HTTP/1.1 connection pool
+ * and HTTP/2 multiplexing over single connection. Local server (cleartext HTTP/2) responds with small delay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class HttpTransportBenchmark {
+
+    @Param("1", "16", "64")
+    var concurrency: Int = 1
+
+    private lateinit var server: Server
+
+    private lateinit var url: String
+
+    private lateinit var http1: CloseableHttpClient
+
+    private lateinit var http1Executor: ExecutorService
+
+    private lateinit var http2: Http2Transport
+
+    @Setup
+    fun setup() {
+        server = Server().apply {
+            val config = HttpConfiguration()
+            val connector = ServerConnector(this, HttpConnectionFactory(config), HTTP2CServerConnectionFactory(config)).apply { port = 0 }
+            addConnector(connector)
+            handler = object : AbstractHandler() {
+                override fun handle(target: String, base: Request, request: HttpServletRequest, response: HttpServletResponse) {
+                    Thread.sleep(RESPONSE_DELAY)
+                    response.contentType = "application/json"
+                    response.writer.write(RESPONSE_BODY)
+                    base.isHandled = true
+                }
+            }
+            start()
+            url = "http://localhost:${connector.localPort}/health"
+        }
+
+        http1 = HttpClientBuilder.create()
+            .setConnectionManager(
+                PoolingHttpClientConnectionManager().apply {
+                    maxTotal = POOL_MAX_TOTAL
+                    defaultMaxPerRoute = POOL_MAX_PER_ROUTE
+                }
+            )
+            .build()
+        http1Executor = Executors.newFixedThreadPool(concurrency)
+        http2 = Http2Transport(TIMEOUT, null, null)
+        http2.execute(HttpGet(url)).let { response -> // upgrade connection to HTTP/2 once
+            response.entity.content.use { it.readBytes() }
+            check(response.protocolVersion.major == 2) { "Server is not responding using HTTP/2!" }
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        http1Executor.shutdownNow()
+        http1.close()
+        server.stop()
+    }
+
+    @Benchmark
+    fun http1(): Int = (1..concurrency).map {
+        CompletableFuture.supplyAsync({ http1.execute(HttpGet(url)).use { EntityUtils.toByteArray(it.entity).size } }, http1Executor)
+    }.sumOf { it.join() }
+
+    @Benchmark
+    fun http2(): Int = (1..concurrency).map {
+        http2.executeAsync(HttpGet(url)).thenApply { response -> response.entity.content.use { it.readBytes().size } }
+    }.sumOf { it.join() }
+
+    companion object {
+        const val RESPONSE_DELAY = 5L
+
+        const val RESPONSE_BODY = """{"status":"ok"}"""
+
+        const val POOL_MAX_TOTAL = 100
+
+        const val POOL_MAX_PER_ROUTE = 20
+
+        const val TIMEOUT = 10_000
+    }
+}
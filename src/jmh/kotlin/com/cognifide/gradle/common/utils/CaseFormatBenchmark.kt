@@ -0,0 +1,37 @@
+package com.cognifide.gradle.common.utils
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+open class CaseFormatBenchmark {
+
+    private val propertyName = "fileTransfer.sftp.connectionTimeout"
+
+    private val taskName = "instanceProvisionSetupAndAwait"
+
+    @Benchmark
+    fun toUpperSnakeCase() = propertyName.toUpperSnakeCase()
+
+    @Benchmark
+    fun toLowerCamelCase() = propertyName.toLowerCamelCase()
+
+    @Benchmark
+    fun toUpperCamelCase() = taskName.toUpperCamelCase()
+
+    @Benchmark
+    fun toLowerDashCase() = taskName.toLowerDashCase()
+}
@@ -0,0 +1,108 @@
+package com.cognifide.gradle.common.utils
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.io.File
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Covers JSON/YAML processing (comparing shared mappers with creating new mapper per each operation) and other
+ * frequently used formatting utilities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+open class FormatsBenchmark {
+
+    data class Instance(val name: String, val httpUrl: String, val enabled: Boolean, val properties: Map<String, String>)
+
+    private lateinit var instances: List<Instance>
+
+    private lateinit var instanceJson: String
+
+    private lateinit var instancesJson: String
+
+    private lateinit var instancesYml: String
+
+    private lateinit var checksumFile: File
+
+    @Setup
+    fun setup() {
+        instances = (1..50).map { no ->
+            Instance(
+                "instance-$no",
+                "http://localhost:${4500 + no}",
+                no % 2 == 0,
+                (1..10).associate { "property-$it" to "value-$no-$it" }
+            )
+        }
+        instanceJson = Formats.toJson(instances.first())
+        instancesJson = Formats.toJson(instances)
+        instancesYml = Formats.toYml(instances)
+        checksumFile = File.createTempFile("formats-benchmark", ".bin").apply {
+            writeBytes(Random(0).nextBytes(CHECKSUM_FILE_SIZE))
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        checksumFile.delete()
+    }
+
+    @Benchmark
+    fun asJson() = Formats.asJson(instancesJson)
+
+    @Benchmark
+    fun asJsonUsingNewMapper() = newJsonMapper().readTree(instancesJson)
+
+    @Benchmark
+    fun asJsonAtPointer() = Formats.asJson(instancesJson.byteInputStream(), "/25/properties/property-5")
+
+    @Benchmark
+    fun toJson() = Formats.toJson(instances)
+
+    @Benchmark
+    fun toJsonUsingNewMapper() = newJsonMapper().writer().writeValueAsString(instances)
+
+    @Benchmark
+    fun toObjectFromJson() = Formats.toObjectFromJson(instanceJson, Instance::class.java)
+
+    @Benchmark
+    fun toObjectFromJsonUsingNewMapper() = newJsonMapper().readValue(instanceJson, Instance::class.java)
+
+    @Benchmark
+    fun asYml() = Formats.asYml(instancesYml)
+
+    @Benchmark
+    fun toYml() = Formats.toYml(instances)
+
+    @Benchmark
+    fun toChecksum() = Formats.toChecksum(checksumFile)
+
+    @Benchmark
+    fun fileSizeBytesToHuman() = Formats.fileSizeBytesToHuman(5_368_709_120L)
+
+    private fun newJsonMapper() = ObjectMapper(JsonFactory()).apply {
+        registerModule(KotlinModule.Builder().build())
+    }
+
+    companion object {
+        const val CHECKSUM_FILE_SIZE = 1024 * 1024
+    }
+}
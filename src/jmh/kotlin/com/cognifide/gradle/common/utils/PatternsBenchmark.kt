@@ -0,0 +1,38 @@
+package com.cognifide.gradle.common.utils
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+open class PatternsBenchmark {
+
+    private val protocols = listOf("http://*", "https://*")
+
+    private val ignores = listOf("**/*___jb_*___", "**/.idea/**", "**/node_modules/**", "!**/src/**")
+
+    private val url = "https://repo.example.com/content/groups/public/com/example/app/1.0.0/app-1.0.0.zip"
+
+    private val path = "/home/user/projects/app/ui.frontend/src/main/webpack/components/button/button.ts"
+
+    @Benchmark
+    fun wildcardProtocols() = Patterns.wildcard(url, protocols)
+
+    @Benchmark
+    fun wildcardIgnores() = Patterns.wildcard(path, ignores)
+
+    @Benchmark
+    fun wildcardSeparated() = Patterns.wildcard(url, "sftp://*,smb://*,http*://*")
+}
@@ -0,0 +1,27 @@
+package com.cognifide.gradle.common.utils.formats
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+open class ISO8601Benchmark {
+
+    @Benchmark
+    fun parse() = ISO8601.parse("2022-08-01T12:34:56.789+02:00")
+
+    @Benchmark
+    fun parseUtc() = ISO8601.parse("2022-08-01T12:34:56.789Z")
+}
@@ -10,6 +10,7 @@ import com.cognifide.gradle.common.build.PropertyParser
 import com.cognifide.gradle.common.build.Retry
 import com.cognifide.gradle.common.build.ServiceAccessor
 import com.cognifide.gradle.common.file.FileWatcher
+import com.cognifide.gradle.common.file.cache.FileCache
 import com.cognifide.gradle.common.file.resolver.FileResolver
 import com.cognifide.gradle.common.file.transfer.FileTransferManager
 import com.cognifide.gradle.common.file.transfer.http.HttpFileTransfer
@@ -68,6 +69,16 @@ open class CommonExtension(val project: Project) {
      */
     fun fileTransfer(options: FileTransferManager.() -> Unit) = fileTransfer.using(options)
 
+    /**
+     * Define settings for global cache of downloaded files shared across builds and projects.
+     */
+    val fileCache = FileCache(this)
+
+    /**
+     * Configures global cache of downloaded files.
+     */
+    fun fileCache(options: FileCache.() -> Unit) = fileCache.using(options)
+
     /**
      * Provides API for displaying interactive notification during running build tasks.
      */
@@ -1,11 +1,16 @@
 package com.cognifide.gradle.common.build
 
 import org.gradle.api.Project
+import org.gradle.api.logging.Logging
 
-class BuildScope private constructor() {
+class BuildScope internal constructor() {
+
+    private val logger = Logging.getLogger(BuildScope::class.java)
 
     private val cache = mutableMapOf<String, Any>()
 
+    private val closeables = mutableListOf<AutoCloseable>()
+
     @Suppress("unchecked_cast")
     fun <T : Any> get(key: String): T? = cache[key] as T?
 
@@ -51,13 +56,38 @@ class BuildScope private constructor() {
         }
     }
 
+    /**
+     * Compute value once and close it automatically when build is finished.
+     */
+    @Synchronized
+    fun <T : AutoCloseable> computeCloseable(key: String, defaultValue: () -> T) = getOrPut(key) {
+        defaultValue().also { closeables.add(it) }
+    }
+
+    /**
+     * Release resources shared within build (like connection pools).
+     */
+    @Synchronized
+    @Suppress("TooGenericExceptionCaught")
+    fun close() {
+        closeables.asReversed().forEach { closeable ->
+            try {
+                closeable.close()
+            } catch (e: Exception) {
+                logger.debug("Cannot close build resource '$closeable'", e)
+            }
+        }
+        closeables.clear()
+    }
+
     companion object {
 
         fun of(project: Project): BuildScope {
             val ext = project.rootProject.extensions.extraProperties
             val key = BuildScope::class.java.canonicalName
             if (!ext.has(key)) {
-                ext.set(key, BuildScope())
+                val service = project.gradle.sharedServices.registerIfAbsent(key, BuildScopeService::class.java) {}
+                ext.set(key, service.get().scope)
             }
 
             return ext.get(key) as BuildScope
@@ -0,0 +1,14 @@
+package com.cognifide.gradle.common.build
+
+import org.gradle.api.services.BuildService
+import org.gradle.api.services.BuildServiceParameters
+
+/**
+ * Owns build scope, so that resources shared within build (like connection pools) are closed when build is finished.
+ */
+abstract class BuildScopeService : BuildService<BuildServiceParameters.None>, AutoCloseable {
+
+    val scope = BuildScope()
+
+    override fun close() = scope.close()
+}
@@ -1,7 +1,7 @@
 package com.cognifide.gradle.common.build
 
 import com.cognifide.gradle.common.CommonException
-import com.cognifide.gradle.common.utils.Patterns
+import com.cognifide.gradle.common.utils.PatternSet
 import org.gradle.api.Project
 import org.gradle.api.artifacts.Dependency
 import org.gradle.internal.typeconversion.UnsupportedNotationException
@@ -26,12 +26,19 @@ class DependencyFile(private val project: Project, notation: Any) {
 
     companion object {
 
-        private val NOTATION_PATTERNS = listOf(
+        private val NOTATION_PATTERNS = PatternSet.of(
             "*:*:*@*", // TODO regex [\w-_.]+
             "*:*:*"
         )
 
-        fun isNotation(text: String) = Patterns.wildcard(text, NOTATION_PATTERNS)
+        private val CHANGING_MARKERS = listOf("SNAPSHOT", "+", "latest.", "[", "(")
+
+        fun isNotation(text: String) = NOTATION_PATTERNS.matches(text)
+
+        /**
+         * Check if notation points to version which may resolve to different file over time (snapshot, dynamic or range).
+         */
+        fun isChanging(text: String) = CHANGING_MARKERS.any { text.contains(it) }
 
         @Suppress("MagicNumber")
         fun getExtension(text: String): String? = text.split(":").getOrNull(3) ?: "jar"
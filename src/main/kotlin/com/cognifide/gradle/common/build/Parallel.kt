@@ -32,8 +32,11 @@ object Parallel {
 
     fun <A, B : Any> poolMap(iterable: Iterable<A>, mapper: CoroutineScope.(A) -> B) = poolMap(poolThreads, iterable, mapper)
 
+    /**
+     * Map values using dedicated pool of threads which is shut down when all values are mapped.
+     */
     fun <A, B : Any> poolMap(threads: Int, iterable: Iterable<A>, mapper: CoroutineScope.(A) -> B): List<B> {
-        return map(Executors.newFixedThreadPool(threads).asCoroutineDispatcher(), iterable, mapper)
+        return Executors.newFixedThreadPool(threads).asCoroutineDispatcher().use { map(it, iterable, mapper) }
     }
 
     fun <A> poolEach(iterable: Iterable<A>, callback: CoroutineScope.(A) -> Unit) = poolEach(poolThreads, iterable, callback)
@@ -0,0 +1,52 @@
+package com.cognifide.gradle.common.file
+
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Cross-process locks based on lock files.
+ */
+object FileLocks {
+
+    /**
+     * File locks are held by JVM so within it access needs to be synchronized additionally.
+     */
+    private val LOCKS = ConcurrentHashMap<String, ReentrantLock>()
+
+    private fun lockOf(lockFile: File) = LOCKS.computeIfAbsent(lockFile.absolutePath) { ReentrantLock() }
+
+    /**
+     * Perform action when lock is acquired (waiting for other threads and processes if needed).
+     */
+    fun <T> lock(lockFile: File, action: () -> T): T = lockOf(lockFile).withLock {
+        lockFile.parentFile.mkdirs()
+        RandomAccessFile(lockFile, "rw").use { file ->
+            val lock = try {
+                file.channel.lock()
+            } catch (e: IOException) {
+                throw FileException("Cannot lock file '$lockFile'. Cause: ${e.message}", e)
+            }
+            lock.use { action() }
+        }
+    }
+
+    /**
+     * Perform action only if lock could be acquired immediately (not held by other thread or process).
+     */
+    fun tryLock(lockFile: File, action: () -> Unit) {
+        val lock = lockOf(lockFile)
+        if (!lock.tryLock()) {
+            return
+        }
+        try {
+            lockFile.parentFile.mkdirs()
+            RandomAccessFile(lockFile, "rw").use { file -> file.channel.tryLock()?.use { action() } }
+        } finally {
+            lock.unlock()
+        }
+    }
+}
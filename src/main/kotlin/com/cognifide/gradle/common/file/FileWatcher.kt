@@ -3,7 +3,7 @@ package com.cognifide.gradle.common.file
 import com.cognifide.gradle.common.CommonExtension
 import com.cognifide.gradle.common.file.watcher.DelegatingFileAlterationListener
 import com.cognifide.gradle.common.file.watcher.Event
-import com.cognifide.gradle.common.utils.Patterns
+import com.cognifide.gradle.common.utils.PatternSet
 import org.apache.commons.io.monitor.FileAlterationMonitor
 import org.apache.commons.io.monitor.FileAlterationObserver
 
@@ -32,13 +32,14 @@ open class FileWatcher(val common: CommonExtension) {
 
         // Start watching
 
+        val ignorePatterns = PatternSet(ignores.get())
         val monitor = FileAlterationMonitor(interval.get()).apply {
             dirs.forEach { dir ->
                 addObserver(
                     FileAlterationObserver(dir).apply {
                         addListener(
                             DelegatingFileAlterationListener { event ->
-                                if (!Patterns.wildcard(event.file, ignores.get())) {
+                                if (!ignorePatterns.matches(event.file)) {
                                     onChange!!.invoke(event)
                                 }
                             }
@@ -0,0 +1,40 @@
+package com.cognifide.gradle.common.file.archive
+
+/**
+ * Ant-style pattern of archive entry paths (like ones used in Gradle file trees) parsed once and reused for matching many entries.
+ * Segment '**' matches any number of directories, '*' and '?' are matching characters within single path segment.
+ */
+class ArchiveEntryMatcher(val pattern: String) {
+
+    private val segments: List<Regex?> = normalize(pattern).split("/")
+        .filter { it.isNotEmpty() }
+        .map { segment -> if (segment == ANY_DIRS) null else compile(segment) }
+
+    fun matches(path: String): Boolean = matches(path.trim('/').split("/"), 0, 0)
+
+    private fun matches(parts: List<String>, part: Int, segment: Int): Boolean {
+        if (segment == segments.size) {
+            return part == parts.size
+        }
+
+        val regex = segments[segment] ?: return (part..parts.size).any { matches(parts, it, segment + 1) }
+        return part < parts.size && regex.matches(parts[part]) && matches(parts, part + 1, segment + 1)
+    }
+
+    override fun toString() = pattern
+
+    companion object {
+
+        private const val ANY_DIRS = "**"
+
+        private fun normalize(pattern: String) = pattern.replace("\\", "/").let {
+            if (it.endsWith("/")) "$it$ANY_DIRS" else it
+        }
+
+        private fun compile(segment: String) = Regex(
+            segment.split("*").joinToString("[^/]*") { part ->
+                part.split("?").joinToString("[^/]") { if (it.isEmpty()) "" else Regex.escape(it) }
+            }
+        )
+    }
+}
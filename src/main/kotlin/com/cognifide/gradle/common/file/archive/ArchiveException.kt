@@ -0,0 +1,10 @@
+package com.cognifide.gradle.common.file.archive
+
+import com.cognifide.gradle.common.file.FileException
+
+open class ArchiveException : FileException {
+
+    constructor(message: String, cause: Throwable) : super(message, cause)
+
+    constructor(message: String) : super(message)
+}
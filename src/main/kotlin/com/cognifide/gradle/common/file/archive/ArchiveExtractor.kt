@@ -0,0 +1,271 @@
+package com.cognifide.gradle.common.file.archive
+
+import com.cognifide.gradle.common.file.FileException
+import org.apache.commons.io.IOUtils
+import org.apache.commons.io.input.BoundedInputStream
+import org.gradle.api.logging.Logging
+import java.io.File
+import java.io.InputStream
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+/**
+ * Extracts entries matching pattern directly from ZIP/TAR archive to target files (without staging whole archive).
+ *
+ * ZIP entries are located using central directory, so that non-matching entries are not even read.
+ * Matching ZIP entries are extracted in parallel. TAR entries are read sequentially and non-matching ones are skipped.
+ * Malformed TAR headers (e.g with invalid checksum) are reported by [ArchiveException].
+ */
+class ArchiveExtractor(val archive: File, private val threads: Int = 1) {
+
+    private val logger = Logging.getLogger(ArchiveExtractor::class.java)
+
+    private val type = ArchiveType.of(archive)
+
+    /**
+     * Check if archive could be extracted (e.g TAR compressed with BZIP2 is not supported).
+     */
+    val supported get() = type != null
+
+    /**
+     * Extract all entries matching pattern to targets determined by entry paths.
+     * Entries mapped to same target or to already existing one are skipped.
+     */
+    fun extract(entriesPattern: String, target: (String) -> File): List<File> {
+        val matcher = ArchiveEntryMatcher(entriesPattern)
+        return when (type) {
+            ArchiveType.ZIP -> zipEntries(matcher) { entries -> extractZip(entries.distinctBy { target(it.name) }, target) }
+            else -> mutableListOf<File>().apply {
+                tarEntries(matcher) { path, input ->
+                    val file = target(path)
+                    if (!file.exists()) {
+                        write(path, input, file)
+                        add(file)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Extract single entry matching pattern to target file. Fails when there is no or more than one such entry.
+     */
+    fun extractSingle(entryPattern: String, target: File): File {
+        val matcher = ArchiveEntryMatcher(entryPattern)
+        var count = 0
+        when (type) {
+            ArchiveType.ZIP -> zipEntries(matcher) { entries ->
+                count = entries.size
+                if (count == 1) extractZip(entries) { target }
+            }
+            else -> tarEntries(matcher) { path, input ->
+                if (++count == 1) write(path, input, target) else if (count == 2) target.delete()
+            }
+        }
+        if (count != 1) {
+            throw FileException("Archive '$archive' contains $count entries matching '$entryPattern' instead of single one!")
+        }
+        return target
+    }
+
+    private fun <T> zipEntries(matcher: ArchiveEntryMatcher, action: ZipFile.(List<ZipEntry>) -> T) = ZipFile(archive).use { zip ->
+        zip.action(zip.entries().asSequence().filter { !it.isDirectory && matcher.matches(it.name) }.toList())
+    }
+
+    private fun ZipFile.extractZip(entries: List<ZipEntry>, target: (String) -> File): List<File> {
+        val extractions = entries.map { entry -> entry to target(entry.name) }.filter { !it.second.exists() }
+        if (threads <= 1 || extractions.size <= 1) {
+            return extractions.map { (entry, file) -> file.apply { write(entry.name, getInputStream(entry), this) } }
+        }
+
+        val executor = Executors.newFixedThreadPool(threads.coerceAtMost(extractions.size))
+        try {
+            return executor.invokeAll(
+                extractions.map { (entry, file) -> Callable { file.apply { write(entry.name, getInputStream(entry), this) } } }
+            ).map { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun tarEntries(matcher: ArchiveEntryMatcher, action: (String, InputStream) -> Unit) {
+        val stream = archive.inputStream().buffered(BUFFER_SIZE).let { if (type == ArchiveType.TAR_GZ) GZIPInputStream(it, BUFFER_SIZE) else it }
+        stream.use { input ->
+            val reader = TarReader(input)
+            while (true) {
+                val entry = reader.next() ?: break
+                val data = BoundedInputStream(input, entry.size).apply { isPropagateClose = false }
+                if (entry.file && matcher.matches(entry.path)) {
+                    action(entry.path, data)
+                }
+                IOUtils.consume(data) // skip not read data of non-matching entry
+                reader.skipPadding(entry)
+            }
+        }
+    }
+
+    private fun write(path: String, input: InputStream, target: File) {
+        logger.info("Extracting archive entry '$path' from '$archive' to '$target'")
+
+        target.parentFile?.mkdirs()
+        val tmp = File(target.parentFile, "${target.name}$TMP_SUFFIX")
+        input.use { stream -> tmp.outputStream().use { stream.copyTo(it, BUFFER_SIZE) } }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    private enum class ArchiveType {
+        ZIP,
+        TAR,
+        TAR_GZ;
+
+        companion object {
+            fun of(archive: File) = archive.name.lowercase().let { name ->
+                when {
+                    name.endsWith(".zip") || name.endsWith(".jar") -> ZIP
+                    name.endsWith(".tar") -> TAR
+                    name.endsWith(".tar.gz") || name.endsWith(".tgz") -> TAR_GZ
+                    else -> null
+                }
+            }
+        }
+    }
+
+    private class TarEntry(val path: String, val size: Long, val file: Boolean)
+
+    /**
+     * Minimal reader of TAR headers (POSIX ustar with GNU and PAX long path and size extensions).
+     * Fails with [ArchiveException] when header is malformed, so that archive could be read in other way.
+     */
+    @Suppress("MagicNumber")
+    private inner class TarReader(private val input: InputStream) {
+
+        private val header = ByteArray(BLOCK_SIZE)
+
+        private var extendedPath: String? = null
+
+        private var extendedSize: Long? = null
+
+        fun next(): TarEntry? {
+            extendedPath = null
+            extendedSize = null
+            while (true) {
+                if (IOUtils.read(input, header) < BLOCK_SIZE || header.all { it.toInt() == 0 }) {
+                    return null
+                }
+                verifyChecksum()
+
+                val type = header[156].toInt().toChar()
+                val size = size()
+                when (type) {
+                    'L' -> extendedPath = String(data(size), Charsets.UTF_8).trimEnd('\u0000')
+                    'x' -> extend(pax(data(size)))
+                    'g', 'K' -> data(size)
+                    else -> return TarEntry(extendedPath ?: path(), extendedSize ?: size, type in FILE_TYPES)
+                }
+            }
+        }
+
+        private fun extend(records: Map<String, String>) {
+            records["path"]?.let { extendedPath = it }
+            records["size"]?.let { extendedSize = it.toLongOrNull() ?: throw malformed("PAX size '$it'") }
+        }
+
+        fun skipPadding(entry: TarEntry) = skipPadding(entry.size)
+
+        private fun skipPadding(size: Long) {
+            IOUtils.skipFully(input, (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE)
+        }
+
+        private fun data(size: Long): ByteArray {
+            val bytes = IOUtils.readFully(input, size.toInt())
+            skipPadding(size)
+            return bytes
+        }
+
+        private fun path(): String {
+            val name = text(0, 100)
+            val prefix = if (text(257, 5) == "ustar") text(345, 155) else ""
+            return if (prefix.isNotEmpty()) "$prefix/$name" else name
+        }
+
+        private fun size(): Long = if (header[124].toInt() and 0x80 != 0) {
+            (125 until 136).fold(0L) { value, i -> (value shl 8) or (header[i].toLong() and 0xFF) }
+        } else {
+            octal(124, 12)
+        }
+
+        /**
+         * Checksum is sum of header bytes with checksum field itself treated as spaces.
+         * Some old archivers were summing signed bytes, so such checksum is accepted too.
+         */
+        private fun verifyChecksum() {
+            val expected = octal(148, 8)
+            var unsigned = 0L
+            var signed = 0L
+            header.forEachIndexed { i, byte ->
+                val value = if (i in 148 until 156) ' '.code.toByte() else byte
+                unsigned += value.toInt() and 0xFF
+                signed += value
+            }
+            if (expected != unsigned && expected != signed) {
+                throw malformed("header checksum (expected $expected but actual is $unsigned)")
+            }
+        }
+
+        private fun octal(offset: Int, length: Int): Long {
+            val value = text(offset, length).trim()
+            return if (value.isEmpty()) 0L else value.toLongOrNull(8) ?: throw malformed("octal number '$value'")
+        }
+
+        private fun text(offset: Int, length: Int): String {
+            val end = (offset until offset + length).firstOrNull { header[it].toInt() == 0 } ?: (offset + length)
+            return String(header, offset, end - offset, Charsets.UTF_8)
+        }
+
+        /**
+         * Parse PAX records ('<length> <key>=<value>\n') by their length as values may contain new lines.
+         */
+        private fun pax(data: ByteArray): Map<String, String> {
+            val records = mutableMapOf<String, String>()
+            var offset = 0
+            while (offset < data.size && data[offset].toInt() != 0) {
+                val space = (offset until data.size).firstOrNull { data[it] == ' '.code.toByte() } ?: throw malformed("PAX record")
+                val length = String(data, offset, space - offset, Charsets.UTF_8).toIntOrNull()
+                if (length == null || length <= space - offset || offset + length > data.size) {
+                    throw malformed("PAX record length")
+                }
+                val record = String(data, space + 1, offset + length - space - 2, Charsets.UTF_8)
+                if (record.contains("=")) {
+                    records[record.substringBefore("=")] = record.substringAfter("=")
+                }
+                offset += length
+            }
+            return records
+        }
+
+        private fun malformed(what: String) = ArchiveException("Archive '$archive' has malformed TAR $what!")
+    }
+
+    companion object {
+
+        private const val BUFFER_SIZE = 64 * 1024
+
+        private const val BLOCK_SIZE = 512
+
+        private val FILE_TYPES = listOf('0', '\u0000', '7')
+
+        private const val TMP_SUFFIX = ".tmp"
+    }
+}
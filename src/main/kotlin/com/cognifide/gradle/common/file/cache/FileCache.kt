@@ -0,0 +1,217 @@
+package com.cognifide.gradle.common.file.cache
+
+import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.file.FileException
+import com.cognifide.gradle.common.file.FileLocks
+import com.cognifide.gradle.common.file.transfer.FileVersion
+import com.cognifide.gradle.common.utils.Formats
+import org.apache.commons.codec.digest.DigestUtils
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Content-addressable cache of downloaded files shared across builds and projects (by default in Gradle user home).
+ *
+ * Files are keyed by URL and remote file version and stored once per SHA-256 of their content.
+ * Files which version is unknown (no entity tag nor modification date) are downloaded again each time.
+ * Cached files are hard linked (or copied when not possible) to target locations.
+ * Concurrent builds are downloading particular file only once thanks to cross-process file locks.
+ */
+@Suppress("TooGenericExceptionCaught")
+class FileCache(private val common: CommonExtension) {
+
+    private val logger = common.logger
+
+    /**
+     * Controls if downloaded files are shared using global cache.
+     */
+    val enabled = common.obj.boolean {
+        convention(false)
+        common.prop.boolean("fileCache.enabled")?.let { set(it) }
+    }
+
+    /**
+     * Root directory of cache.
+     */
+    val dir = common.obj.dir {
+        convention(common.project.layout.dir(common.obj.provider { common.project.gradle.gradleUserHomeDir.resolve(DIR_DEFAULT) }))
+        common.prop.file("fileCache.dir")?.let { set(it) }
+    }
+
+    /**
+     * Maximum size of cached files in bytes. When exceeded, least recently used files are deleted.
+     */
+    val maxSize = common.obj.long {
+        convention(MAX_SIZE_DEFAULT)
+        common.prop.long("fileCache.maxSize")?.let { set(it) }
+    }
+
+    /**
+     * Controls if cached files are hard linked to target locations. When disabled or not possible, files are copied.
+     */
+    val linking = common.obj.boolean {
+        convention(true)
+        common.prop.boolean("fileCache.linking")?.let { set(it) }
+    }
+
+    private val root get() = dir.get().asFile
+
+    /**
+     * Get file from cache or download it using callback when missing.
+     */
+    fun download(url: String, version: () -> FileVersion?, target: File, downloader: (File) -> Unit) =
+        download(url, version, target, false, downloader)
+
+    /**
+     * Get file from cache or download it using callback when missing.
+     * Callback should download file to the provided location (partially downloaded file is kept between builds).
+     *
+     * Existing target is kept as is unless it is revalidated. Then callback is responsible for checking if remote file
+     * has changed, or when cache is enabled, file version determines cached file linked to target.
+     */
+    fun download(url: String, version: () -> FileVersion?, target: File, revalidate: Boolean, downloader: (File) -> Unit) {
+        if (target.exists() && !revalidate) {
+            return
+        }
+        if (!enabled.get()) {
+            downloader(target)
+            return
+        }
+
+        val fileVersion = version()?.takeIf { it.etag != null || it.modified != null }
+        if (fileVersion == null) {
+            logger.info("Version of file at URL '$url' is unknown. Downloading it again instead of using cached one.")
+        }
+        val key = DigestUtils.sha256Hex(listOfNotNull(url, fileVersion?.let { Formats.toJson(it, false) }).joinToString("|"))
+        lock(key) {
+            val ref = root.resolve("$REFS_DIR/$key").takeIf { fileVersion != null }
+            repeat(LINK_ATTEMPTS) {
+                val cached = ref?.takeIf { it.exists() }?.readText()?.trim()?.let { root.resolve("$BLOBS_DIR/$it") }
+                val blob = if (cached != null && cached.exists()) {
+                    logger.info("Using cached file '$cached' downloaded from URL '$url'")
+                    cached.apply { access(this) }
+                } else {
+                    store(url, key, ref, downloader)
+                }
+                if (link(blob, target)) {
+                    return@lock
+                }
+                logger.info("Cached file '$blob' has been evicted by concurrent build. Downloading it again from URL '$url'")
+                ref?.delete()
+            }
+            throw FileException("Cannot link cached file downloaded from URL '$url' to '$target' as it is being evicted concurrently!")
+        }
+        evict()
+    }
+
+    private fun store(url: String, key: String, ref: File?, downloader: (File) -> Unit): File {
+        val downloaded = root.resolve("$DOWNLOAD_DIR/$key/${url.substringAfterLast("/")}")
+        downloaded.parentFile.mkdirs()
+        downloader(downloaded)
+
+        val checksum = downloaded.inputStream().use { DigestUtils.sha256Hex(it) }
+        val blob = root.resolve("$BLOBS_DIR/$checksum")
+        blob.parentFile.mkdirs()
+        if (blob.exists()) {
+            logger.info("Deduplicating file downloaded from URL '$url' as same file is already cached '$blob'")
+        } else {
+            Files.move(downloaded.toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE)
+        }
+        access(blob)
+        downloaded.parentFile.deleteRecursively()
+
+        ref?.apply {
+            parentFile.mkdirs()
+            writeText(checksum)
+        }
+        return blob
+    }
+
+    /**
+     * Link or copy cached file to target. Returns false when cached file is missing (evicted in the meantime).
+     */
+    private fun link(blob: File, target: File): Boolean {
+        target.parentFile.mkdirs()
+        if (target.exists()) {
+            if (blob.exists() && Files.isSameFile(blob.toPath(), target.toPath())) {
+                return true
+            }
+            target.delete()
+        }
+        if (linking.get()) {
+            try {
+                Files.createLink(target.toPath(), blob.toPath())
+                return true
+            } catch (e: Exception) {
+                logger.debug("Cannot link cached file '$blob' to '$target'. Copying it instead.", e)
+            }
+        }
+        return try {
+            blob.copyTo(target, true)
+            true
+        } catch (e: IOException) {
+            if (blob.exists()) {
+                throw e
+            }
+            logger.debug("Cannot copy cached file '$blob' to '$target' as it does not exist", e)
+            false
+        }
+    }
+
+    /**
+     * Mark cached file as recently used. Cached file itself is not touched, because it is hard linked to targets.
+     */
+    private fun access(blob: File) {
+        val marker = accessMarker(blob)
+        if (!marker.exists()) {
+            marker.parentFile.mkdirs()
+            marker.createNewFile()
+        }
+        marker.setLastModified(System.currentTimeMillis())
+    }
+
+    private fun accessMarker(blob: File) = root.resolve("$ACCESS_DIR/${blob.name}")
+
+    private fun accessTime(blob: File) = accessMarker(blob).lastModified().takeIf { it > 0 } ?: blob.lastModified()
+
+    /**
+     * Delete least recently used files when cache exceeds its maximum size.
+     * Skipped when other build is already doing it.
+     */
+    private fun evict() = FileLocks.tryLock(root.resolve(EVICTION_LOCK)) {
+        val blobs = root.resolve(BLOBS_DIR).listFiles()?.filter { it.isFile }?.sortedBy { accessTime(it) } ?: return@tryLock
+        var size = blobs.sumOf { it.length() }
+        blobs.asSequence().takeWhile { size > maxSize.get() }.forEach { blob ->
+            val length = blob.length()
+            if (blob.delete()) {
+                accessMarker(blob).delete()
+                logger.info("Evicted cached file '$blob' (${Formats.fileSizeBytesToHuman(length)})")
+                size -= length
+            }
+        }
+    }
+
+    private fun <T> lock(key: String, action: () -> T): T = FileLocks.lock(root.resolve("$LOCKS_DIR/$key.lock"), action)
+
+    companion object {
+        const val DIR_DEFAULT = "caches/gradle-common-plugin/files"
+
+        const val MAX_SIZE_DEFAULT = 20L * 1024 * 1024 * 1024
+
+        const val REFS_DIR = "refs"
+
+        const val BLOBS_DIR = "blobs"
+
+        const val DOWNLOAD_DIR = "download"
+
+        const val LOCKS_DIR = "locks"
+
+        const val ACCESS_DIR = "access"
+
+        private const val LINK_ATTEMPTS = 2
+
+        const val EVICTION_LOCK = "$LOCKS_DIR/eviction.lock"
+    }
+}
@@ -1,12 +1,16 @@
 package com.cognifide.gradle.common.file.resolver
 
+import org.gradle.api.provider.Provider
 import java.io.File
 
 open class FileGroup(val resolver: Resolver<FileGroup>, val name: String) {
 
     private val _resolutions = mutableListOf<FileResolution>()
 
-    internal var parallelable = true
+    /**
+     * Determines if all files could be resolved in parallel.
+     */
+    val parallelable: Boolean get() = _resolutions.all { it.parallelable }
 
     val resolutions: List<FileResolution> get() = _resolutions.toList()
 
@@ -14,6 +18,16 @@ open class FileGroup(val resolver: Resolver<FileGroup>, val name: String) {
 
     val dirs: List<File> get() = _resolutions.map { it.dir }
 
+    /**
+     * Resolve files lazily, only when provider value is requested.
+     */
+    val filesProvider: Provider<List<File>> get() = resolver.common.obj.provider { files }
+
+    /**
+     * Start resolving files in background.
+     */
+    fun prefetch() = _resolutions.forEach { it.prefetch() }
+
     protected open fun createResolution(id: String, resolver: (FileResolution) -> File) = FileResolution(this, id, resolver)
 
     fun resolve(id: String, resolver: (FileResolution) -> File): FileResolution = createResolution(id, resolver).apply { _resolutions += this }
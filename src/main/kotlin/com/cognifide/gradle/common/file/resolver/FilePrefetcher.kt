@@ -0,0 +1,35 @@
+package com.cognifide.gradle.common.file.resolver
+
+import org.gradle.api.logging.Logging
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Resolves files in background before they are consumed, so that downloading overlaps with other work.
+ * Shared within build and stopped when build is finished.
+ */
+class FilePrefetcher(threads: Int) : AutoCloseable {
+
+    private val logger = Logging.getLogger(FilePrefetcher::class.java)
+
+    private val executor: ExecutorService = Executors.newFixedThreadPool(threads) { runnable ->
+        Thread(runnable, "file-prefetcher").apply { isDaemon = true }
+    }
+
+    /**
+     * Start resolving file. Failure is only logged, as it will be reported again when file is consumed.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    fun prefetch(resolution: FileResolution): Future<*> = executor.submit {
+        try {
+            resolution.resolve()
+        } catch (e: Exception) {
+            logger.debug("Cannot prefetch file of resolution '${resolution.id}' in group '${resolution.group.name}'", e)
+        }
+    }
+
+    override fun close() {
+        executor.shutdownNow()
+    }
+}
@@ -1,6 +1,9 @@
 package com.cognifide.gradle.common.file.resolver
 
+import com.cognifide.gradle.common.file.archive.ArchiveException
+import com.cognifide.gradle.common.file.archive.ArchiveExtractor
 import org.gradle.api.file.FileTree
+import org.gradle.api.provider.Provider
 import java.io.File
 
 open class FileResolution(val group: FileGroup, val id: String, private val resolver: (FileResolution) -> File) {
@@ -9,15 +12,35 @@ open class FileResolution(val group: FileGroup, val id: String, private val reso
 
     val dir get() = group.resolver.downloadDir.get().asFile.resolve(id)
 
+    /**
+     * Determines if file could be resolved concurrently with others (e.g not requiring Gradle dependency resolution).
+     */
+    internal var parallelable = true
+
     val file: File by lazy { thenOperations.fold(resolver(this)) { f, o -> o(f) } }
 
     private var thenOperations = mutableListOf<FileResolution.(File) -> File>()
 
+    /**
+     * Resolve file lazily, only when provider value is requested.
+     */
+    val fileProvider: Provider<File> = common.obj.provider { file }
+
     /**
      * Resolve file immediatelly.
      */
     fun resolve() = file
 
+    /**
+     * Hint that file will be needed soon, so it could be resolved in background.
+     * Files requiring Gradle dependency resolution are not prefetched.
+     */
+    fun prefetch() {
+        if (parallelable) {
+            group.resolver.prefetcher.prefetch(this)
+        }
+    }
+
     /**
      * Perform operation on resolved file, but do not change it path (work in-place).
      */
@@ -79,10 +102,10 @@ open class FileResolution(val group: FileGroup, val id: String, private val reso
      * Extract & copy single archive file and copy it to target location only if it does not exist.
      */
     fun copyArchiveFile(archive: File, entryPattern: String, target: File) = target.apply {
-        if (!exists()) {
+        if (!exists() && !extract(archive) { extractSingle(entryPattern, this@apply) }) {
             val archiveFile = archiveFile(archive, entryPattern)
             common.logger.info("Copying resolved archive file '$archiveFile' to '$this'")
-            archiveFile.copyTo(this)
+            archiveFile.copyTo(this, true)
         }
     }
 
@@ -90,6 +113,10 @@ open class FileResolution(val group: FileGroup, val id: String, private val reso
      * Extract & copy archive files and copy them to target directory only if it each file does not exist.
      */
     fun copyArchiveFiles(archive: File, entriesPattern: String, targetDir: File) {
+        if (extract(archive) { extract(entriesPattern) { File(targetDir, it.substringAfterLast("/")) } }) {
+            return
+        }
+
         archiveFiles(archive, entriesPattern).forEach { archiveFile ->
             File(targetDir, archiveFile.name).apply {
                 if (!exists()) {
@@ -99,4 +126,19 @@ open class FileResolution(val group: FileGroup, val id: String, private val reso
             }
         }
     }
+
+    /**
+     * Extract archive files directly when possible. Returns false when archive needs to be read using Gradle instead.
+     */
+    private fun extract(archive: File, action: ArchiveExtractor.() -> Unit): Boolean {
+        val extractor = ArchiveExtractor(archive, group.resolver.parallelLevel.get())
+            .takeIf { group.resolver.streamingExtraction.get() && it.supported } ?: return false
+        return try {
+            extractor.action()
+            true
+        } catch (e: ArchiveException) {
+            common.logger.info("Cannot extract files directly from archive '$archive'. Reading it using Gradle instead.", e)
+            false
+        }
+    }
 }
@@ -1,7 +1,11 @@
 package com.cognifide.gradle.common.file.resolver
 
 import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.build.DependencyFile
+import com.cognifide.gradle.common.build.ProgressIndicator
 import com.cognifide.gradle.common.file.FileException
+import com.cognifide.gradle.common.file.transfer.FileVersion
+import com.cognifide.gradle.common.file.transfer.ResumableFileTransfer
 import com.cognifide.gradle.common.file.transfer.http.HttpFileTransfer
 import com.cognifide.gradle.common.file.transfer.resolve.ResolveFileTransfer
 import com.cognifide.gradle.common.file.transfer.sftp.SftpFileTransfer
@@ -9,7 +13,10 @@ import com.cognifide.gradle.common.file.transfer.smb.SmbFileTransfer
 import com.cognifide.gradle.common.utils.Formats
 import com.cognifide.gradle.common.utils.Patterns
 import org.apache.commons.io.FilenameUtils
+import org.gradle.api.provider.Provider
 import java.io.File
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 /**
  * File downloader with groups supporting files from multiple sources: local and remote (SFTP, SMB, HTTP).
@@ -34,13 +41,22 @@ abstract class Resolver<G : FileGroup>(val common: CommonExtension) {
         }
 
     /**
-     * Controls count of groups resolved in parallel.
+     * Controls count of files resolved in parallel.
      */
     val parallelLevel = common.obj.int {
         convention(3)
         common.prop.int("resolver.parallelLevel")?.let { set(it) }
     }
 
+    /**
+     * Controls if archive files are extracted by streaming matching entries directly to target files.
+     * When disabled or archive is not supported (e.g TAR compressed with BZIP2), Gradle archive trees are used instead.
+     */
+    val streamingExtraction = common.obj.boolean {
+        convention(true)
+        common.prop.boolean("resolver.streamingExtraction")?.let { set(it) }
+    }
+
     /**
      * Files respected when searching for recent local files.
      */
@@ -51,24 +67,54 @@ abstract class Resolver<G : FileGroup>(val common: CommonExtension) {
 
     val groups get() = groupList.filter { it.resolutions.isNotEmpty() }
 
+    /**
+     * Resolve files of groups matching name.
+     *
+     * Each file is resolved separately, so that independent files are downloaded concurrently and post-processed
+     * (e.g extracted) while others are still being downloaded. Only files requiring Gradle dependency resolution
+     * are resolved one by one on current thread.
+     */
     fun resolveGroups(groupName: String) = groups.filter { Patterns.wildcard(it.name, groupName) }.apply {
+        val resolutions = flatMap { it.resolutions }
         common.progress {
             step = "Resolving files"
-            total = size.toLong()
+            total = resolutions.size.toLong()
 
             if (parallelLevel.get() <= 1) {
-                forEach { group ->
-                    increment("Group '${group.name}'") { group.resolve() }
-                }
+                resolutions.forEach { resolve(it) }
             } else {
-                val (parallel, sequential) = partition { it.parallelable }
-                common.parallel.poolEach(parallelLevel.get(), parallel) { group ->
-                    increment("Group '${group.name}'") { group.resolve() }
-                }
-                sequential.forEach { group ->
-                    increment("Group '${group.name}'") { group.resolve() }
+                val (parallel, sequential) = resolutions.partition { it.parallelable }
+                resolveParallel(parallel) { sequential.forEach { resolve(it) } }
+            }
+        }
+    }
+
+    private fun ProgressIndicator.resolve(resolution: FileResolution) {
+        increment("Group '${resolution.group.name}'") { resolution.resolve() }
+    }
+
+    /**
+     * Resolve files using work-stealing pool while performing other action on current thread.
+     */
+    private fun ProgressIndicator.resolveParallel(resolutions: List<FileResolution>, action: () -> Unit) {
+        if (resolutions.isEmpty()) {
+            action()
+            return
+        }
+
+        val executor = Executors.newWorkStealingPool(parallelLevel.get())
+        try {
+            val futures = resolutions.map { resolution -> executor.submit { resolve(resolution) } }
+            action()
+            futures.forEach { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
                 }
             }
+        } finally {
+            executor.shutdownNow()
         }
     }
 
@@ -76,6 +122,46 @@ abstract class Resolver<G : FileGroup>(val common: CommonExtension) {
 
     val files get() = groupFiles(Patterns.WILDCARD)
 
+    /**
+     * Resolve files of groups matching name lazily, only when provider value is requested.
+     */
+    fun groupFilesProvider(name: String): Provider<List<File>> = common.obj.provider { groupFiles(name) }
+
+    val filesProvider get() = groupFilesProvider(Patterns.WILDCARD)
+
+    /**
+     * Start resolving files of groups matching name in background, so that they are ready when consumed.
+     */
+    fun prefetch(groupName: String = Patterns.WILDCARD) = groups.filter { Patterns.wildcard(it.name, groupName) }.forEach { it.prefetch() }
+
+    /**
+     * Start resolving files in background when task graph is ready (all files are defined at that time).
+     */
+    fun prefetchWhenReady(groupName: String = Patterns.WILDCARD) {
+        project.gradle.taskGraph.whenReady { prefetch(groupName) }
+    }
+
+    /**
+     * Controls if files resolved by previous builds are reused without resolving them again when still unchanged.
+     * Not respected for changing dependencies (snapshots, dynamic versions) and when revalidation of downloaded files is enabled.
+     */
+    val indexed = common.obj.boolean {
+        convention(true)
+        common.prop.boolean("resolver.indexed")?.let { set(it) }
+    }
+
+    internal val index: ResolverIndex
+        get() = downloadDir.get().asFile.resolve(ResolverIndex.FILE_NAME).let { file ->
+            common.buildScope.computeCloseable("${ResolverIndex::class.java.canonicalName}_$file") { ResolverIndex(file) }
+        }
+
+    private fun indexable(value: String) = indexed.get() && !common.fileTransfer.revalidate.get() && !DependencyFile.isChanging(value)
+
+    internal val prefetcher: FilePrefetcher
+        get() = common.buildScope.computeCloseable("${FilePrefetcher::class.java.canonicalName}_${parallelLevel.get()}") {
+            FilePrefetcher(parallelLevel.get().coerceAtLeast(1))
+        }
+
     fun group(name: String) = groupList.find { it.name == name }
         ?: throw FileException("File group '$name' is not defined.")
 
@@ -92,24 +178,43 @@ abstract class Resolver<G : FileGroup>(val common: CommonExtension) {
     /**
      * Resolve file in case of various type of specified value: file, url to file, dependency notation, project dependency.
      */
-    @Suppress("NestedBlockDepth", "TooGenericExceptionCaught")
-    fun get(value: Any): FileResolution = common.fileTransfer.run {
-        try {
+    @Suppress("TooGenericExceptionCaught")
+    fun get(value: Any): FileResolution {
+        if (value is String && indexable(value)) {
+            // file resolved by previous build and still unchanged
+            index.find(value)?.let { entry ->
+                return resolveFile(value, entry.parallel) { resolution -> index.find(value)?.file ?: resolveRemote(value, resolution) }
+            }
+        }
+
+        return try {
             // local file or task providing file
             useLocal(project.files(value).singleFile)
         } catch (e: Exception) {
-            // files resolved using protocols
             if (value is String) {
-                handling(value).run {
-                    if (this is ResolveFileTransfer) { // support for special protocol 'resolve'
-                        resolveFile(value, parallelable.get()) { resolve.resolve(value) }
-                    } else { // other protocols like 'http', 'sftp', 'smb'
-                        resolveFileUrl(value, parallelable.get()) { downloadUsing(this, value, it) }
-                    }
-                }
+                resolveFile(value, common.fileTransfer.handling(value).parallelable.get()) { resolveRemote(value, it) }
             } else {
                 // cross project / build dependencies
-                resolveFile(value, false) { resolve.resolve(value) }
+                resolveFile(value, false) { common.fileTransfer.resolve.resolve(value) }
+            }
+        }
+    }
+
+    /**
+     * Resolve file using protocols and save result in index.
+     */
+    private fun resolveRemote(value: String, resolution: FileResolution): File = common.fileTransfer.run {
+        handling(value).run {
+            if (this is ResolveFileTransfer) { // support for special protocol 'resolve'
+                resolve.resolve(value)
+            } else { // other protocols like 'http', 'sftp', 'smb'
+                downloadFileUrl(value, resolution, { (this as? ResumableFileTransfer)?.version(value) }, revalidating(this)) {
+                    downloadUsing(this, value, it)
+                }
+            }.also { file ->
+                if (indexable(value)) {
+                    index.record(value, file, parallelable.get())
+                }
             }
         }
     }
@@ -255,15 +360,21 @@ abstract class Resolver<G : FileGroup>(val common: CommonExtension) {
 
     private fun resolveFile(hash: Any, parallel: Boolean, resolver: (FileResolution) -> File): FileResolution {
         val id = Formats.toHashCodeHex(hash)
-        if (!parallel) {
-            groupCurrent.parallelable = false
-        }
+        return groupCurrent.resolve(id, resolver).apply { parallelable = parallel }
+    }
 
-        return groupCurrent.resolve(id, resolver)
+    private fun resolveFileUrl(url: String, parallel: Boolean, version: () -> FileVersion? = { null }, resolver: (File) -> Unit): FileResolution {
+        return resolveFile(url, parallel) { resolution -> downloadFileUrl(url, resolution, version, false, resolver) }
     }
 
-    private fun resolveFileUrl(url: String, parallel: Boolean, resolver: (File) -> Unit): FileResolution {
-        return resolveFile(url, parallel) { File(it.dir, FilenameUtils.getName(url)).apply { resolver(this) } }
+    private fun downloadFileUrl(
+        url: String,
+        resolution: FileResolution,
+        version: () -> FileVersion?,
+        revalidate: Boolean = false,
+        resolver: (File) -> Unit
+    ): File {
+        return File(resolution.dir, FilenameUtils.getName(url)).apply { common.fileCache.download(url, version, this, revalidate, resolver) }
     }
 
     private fun useLocal(sourceFile: File, parallel: Boolean) = resolveFile(sourceFile.absolutePath, parallel) { sourceFile }
@@ -0,0 +1,119 @@
+package com.cognifide.gradle.common.file.resolver
+
+import com.cognifide.gradle.common.file.transfer.FileTransferManager
+import com.cognifide.gradle.common.file.transfer.FileVersion
+import org.gradle.api.logging.Logging
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Persistent index of files resolved by previous builds (by default 'build/download/index.bin').
+ *
+ * Maps resolved value (URL, dependency notation) to file path, size, last modification time and validator (ETag),
+ * so that warm builds could reuse files without resolving Gradle configurations or contacting remote servers.
+ * Entry is respected only when indexed file is still unchanged. Index is saved when build is finished.
+ */
+class ResolverIndex(val file: File) : AutoCloseable {
+
+    private val logger = Logging.getLogger(ResolverIndex::class.java)
+
+    class Entry(val path: String, val size: Long, val modified: Long, val etag: String?, val parallel: Boolean) {
+
+        val file get() = File(path)
+
+        val valid get() = file.let { it.length() == size && it.lastModified() == modified && it.exists() } &&
+            (etag == null || FileVersion.read(versionFile(file))?.etag == etag)
+    }
+
+    private val entries: MutableMap<String, Entry> by lazy { ConcurrentHashMap(read()) }
+
+    @Volatile
+    private var modified = false
+
+    /**
+     * Get entry of value only when indexed file is unchanged.
+     */
+    fun find(value: String): Entry? = entries[value]?.takeIf { it.valid }
+
+    fun record(value: String, file: File, parallel: Boolean) {
+        val etag = FileVersion.read(versionFile(file))?.etag
+        entries[value] = Entry(file.absolutePath, file.length(), file.lastModified(), etag, parallel)
+        modified = true
+    }
+
+    private fun read(): Map<String, Entry> {
+        if (!file.exists()) {
+            return mapOf()
+        }
+
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                if (input.readInt() != FORMAT_VERSION) {
+                    return mapOf()
+                }
+                (0 until input.readInt()).associate {
+                    input.readUTF() to Entry(
+                        path = input.readUTF(),
+                        size = input.readLong(),
+                        modified = input.readLong(),
+                        etag = if (input.readBoolean()) input.readUTF() else null,
+                        parallel = input.readBoolean()
+                    )
+                }
+            }
+        } catch (e: IOException) {
+            logger.debug("Cannot read resolver index '$file'. Starting with empty one.", e)
+            mapOf()
+        }
+    }
+
+    /**
+     * Save index atomically, so that concurrent builds always see complete one.
+     */
+    fun save() {
+        if (!modified) {
+            return
+        }
+
+        val tmp = File(file.parentFile, "${file.name}.tmp")
+        try {
+            file.parentFile.mkdirs()
+            DataOutputStream(tmp.outputStream().buffered()).use { write(it, entries.toMap()) }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+            modified = false
+        } catch (e: IOException) {
+            logger.debug("Cannot save resolver index '$file'", e)
+            tmp.delete()
+        }
+    }
+
+    private fun write(output: DataOutputStream, snapshot: Map<String, Entry>) {
+        output.writeInt(FORMAT_VERSION)
+        output.writeInt(snapshot.size)
+        snapshot.forEach { (value, entry) ->
+            output.writeUTF(value)
+            output.writeUTF(entry.path)
+            output.writeLong(entry.size)
+            output.writeLong(entry.modified)
+            output.writeBoolean(entry.etag != null)
+            entry.etag?.let { output.writeUTF(it) }
+            output.writeBoolean(entry.parallel)
+        }
+    }
+
+    override fun close() = save()
+
+    companion object {
+
+        const val FILE_NAME = "index.bin"
+
+        private const val FORMAT_VERSION = 1
+
+        private fun versionFile(file: File) = File(file.parentFile, "${file.name}${FileTransferManager.VERSION_SUFFIX}")
+    }
+}
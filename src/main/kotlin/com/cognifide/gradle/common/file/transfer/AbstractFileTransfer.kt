@@ -2,6 +2,7 @@ package com.cognifide.gradle.common.file.transfer
 
 import com.cognifide.gradle.common.CommonExtension
 import com.cognifide.gradle.common.file.FileException
+import com.cognifide.gradle.common.utils.Formats
 import java.io.File
 
 abstract class AbstractFileTransfer(protected val common: CommonExtension) : FileTransferHandler {
@@ -36,7 +37,31 @@ abstract class AbstractFileTransfer(protected val common: CommonExtension) : Fil
         throw FileException("File transfer '$name' does not support 'stat' operation.")
     }
 
-    fun downloader(options: FileDownloader.() -> Unit = {}) = FileDownloader(common).apply(options)
+    /**
+     * Maximum number of bytes per second transferred using this transfer type (all files together).
+     */
+    val rateLimit = common.obj.long {
+        convention(common.obj.provider { common.prop.string("fileTransfer.$name.rateLimit")?.let { Formats.fileSizeHumanToBytes(it) } })
+    }
+
+    private var rateLimiter: FileTransferRateLimiter? = null
+
+    private val rateLimiters: List<FileTransferRateLimiter>
+        get() = listOfNotNull(transferRateLimiter(), common.fileTransfer.rateLimiter)
+
+    @Synchronized
+    private fun transferRateLimiter(): FileTransferRateLimiter? {
+        val limit = rateLimit.orNull ?: return null
+        return rateLimiter?.takeIf { it.bytesPerSecond == limit } ?: FileTransferRateLimiter(limit).also { rateLimiter = it }
+    }
+
+    fun downloader(options: FileDownloader.() -> Unit = {}) = FileDownloader(common).apply {
+        rateLimiters = this@AbstractFileTransfer.rateLimiters
+        options()
+    }
 
-    fun uploader(options: FileUploader.() -> Unit = {}) = FileUploader(common).apply(options)
+    fun uploader(options: FileUploader.() -> Unit = {}) = FileUploader(common).apply {
+        rateLimiters = this@AbstractFileTransfer.rateLimiters
+        options()
+    }
 }
@@ -0,0 +1,23 @@
+package com.cognifide.gradle.common.file.transfer
+
+import java.security.MessageDigest
+
+/**
+ * Digest algorithms which could be computed while transferring files.
+ */
+enum class ChecksumAlgorithm(val digestName: String, val extension: String) {
+    MD5("MD5", "md5"),
+    SHA1("SHA-1", "sha1"),
+    SHA256("SHA-256", "sha256");
+
+    fun digest(): MessageDigest = MessageDigest.getInstance(digestName)
+
+    companion object {
+
+        /**
+         * Find algorithm by name (like 'SHA-256' or 'sha256') or checksum file extension.
+         */
+        fun of(name: String) = values().firstOrNull { it.extension.equals(name.replace("-", ""), true) }
+            ?: throw FileTransferException("Checksum algorithm '$name' is not supported! Supported are: ${values().joinToString(", ") { it.digestName }}")
+    }
+}
@@ -0,0 +1,94 @@
+package com.cognifide.gradle.common.file.transfer
+
+import org.apache.commons.codec.binary.Hex
+import java.io.File
+import java.security.MessageDigest
+
+/**
+ * Digests updated by downloaders and uploaders with bytes being transferred within computed block,
+ * so that checksums are available without reading transferred file again.
+ */
+class FileChecksums(algorithms: Collection<ChecksumAlgorithm>) {
+
+    private val digests = algorithms.associateWith { it.digest() }
+
+    val algorithms: Set<ChecksumAlgorithm> get() = digests.keys
+
+    /**
+     * Number of bytes included in digests.
+     */
+    var length: Long = 0
+        private set
+
+    @Synchronized
+    fun reset() {
+        digests.values.forEach { it.reset() }
+        length = 0
+    }
+
+    @Synchronized
+    fun update(bytes: ByteArray, offset: Int, count: Int) {
+        digests.values.forEach { it.update(bytes, offset, count) }
+        length += count
+    }
+
+    /**
+     * Include bytes of file (or its beginning only) in digests.
+     */
+    fun update(file: File, limit: Long = file.length()) {
+        file.inputStream().use { input ->
+            val buf = ByteArray(BUFFER_SIZE)
+            var remaining = limit
+            while (remaining > 0) {
+                val read = input.read(buf, 0, minOf(buf.size.toLong(), remaining).toInt())
+                if (read < 0) {
+                    break
+                }
+                update(buf, 0, read)
+                remaining -= read
+            }
+        }
+    }
+
+    /**
+     * Ensure that digests cover exactly given file (e.g when transfer was done without streaming bytes or was resumed).
+     */
+    fun complete(file: File) {
+        if (length != file.length()) {
+            reset()
+            update(file)
+        }
+    }
+
+    /**
+     * Hex-encoded values of checksums of bytes processed so far.
+     */
+    @Synchronized
+    fun values(): Map<ChecksumAlgorithm, String> = digests.mapValues { (_, digest) ->
+        Hex.encodeHexString((digest.clone() as MessageDigest).digest())
+    }
+
+    operator fun get(algorithm: ChecksumAlgorithm): String? = values()[algorithm]
+
+    companion object {
+
+        private const val BUFFER_SIZE = 64 * 1024
+
+        private val CURRENT = ThreadLocal<FileChecksums?>()
+
+        /**
+         * Checksums to be computed by transfers performed by current thread.
+         */
+        val current: FileChecksums? get() = CURRENT.get()
+
+        fun <T> compute(checksums: FileChecksums?, action: () -> T): T {
+            val previous = CURRENT.get()
+            CURRENT.set(checksums)
+            try {
+                return action()
+            } finally {
+                CURRENT.set(previous)
+            }
+        }
+    }
+}
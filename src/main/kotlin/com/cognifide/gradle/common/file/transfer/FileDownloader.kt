@@ -3,17 +3,43 @@ package com.cognifide.gradle.common.file.transfer
 import com.cognifide.gradle.common.CommonExtension
 import com.cognifide.gradle.common.utils.Formats
 import java.io.File
+import java.io.FileInputStream
 import java.io.FileOutputStream
 import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.atomic.AtomicLong
 
 class FileDownloader(private val common: CommonExtension) {
 
-    private var processedBytes: Long = 0
+    private val processed = AtomicLong()
+
+    private val processedBytes: Long get() = processed.get()
+
+    private val tracker = FileTransferTracker.current
+
+    private val checksums = FileChecksums.current
+
+    /**
+     * Limiters slowing down transfer (e.g specific to transfer type and global one).
+     */
+    var rateLimiters: List<FileTransferRateLimiter> = listOf()
 
     private var startTime: Long = -1
 
     var size: Long = 0
 
+    /**
+     * Number of bytes already downloaded. When greater than zero, bytes read are appended to target file.
+     */
+    var offset: Long = 0
+
+    /**
+     * Controls if partially downloaded file should be kept when download fails (to be able to resume it later).
+     */
+    var keepPartial: Boolean = false
+
     var chunkSize: Int = common.prop.int("fileTransfer.downloader.chunkSize") ?: CHUNK_SIZE
 
     fun download(input: InputStream, target: File) {
@@ -22,25 +48,30 @@ class FileDownloader(private val common: CommonExtension) {
             input.use { inputStream ->
                 target.parentFile.mkdirs()
                 startTime = System.currentTimeMillis()
+                processed.set(offset)
+                tracker?.expect((size - offset).coerceAtLeast(0L))
+                checksums?.apply {
+                    reset()
+                    if (offset > 0) update(target, offset)
+                }
 
-                val output = FileOutputStream(target)
+                val output = FileOutputStream(target, offset > 0)
                 var finished = false
 
                 try {
-                    val buf = ByteArray(chunkSize)
-                    var read = inputStream.read(buf)
-
-                    while (read >= 0) {
-                        output.write(buf, 0, read)
-                        processedBytes += read.toLong()
-                        read = inputStream.read(buf)
+                    when (inputStream) {
+                        is FileInputStream -> when (checksums) {
+                            null -> transferChannel(inputStream.channel, output.channel)
+                            else -> transferStream(inputStream, output)
+                        }
+                        else -> transferStream(inputStream, output)
                     }
 
                     output.flush()
                     finished = true
                 } finally {
                     output.close()
-                    if (!finished) {
+                    if (!finished && !keepPartial) {
                         target.delete()
                     }
                 }
@@ -48,6 +79,94 @@ class FileDownloader(private val common: CommonExtension) {
         }
     }
 
+    /**
+     * Copy local file without copying bytes through user space.
+     * Transferring in chunks keeps progress reporting working.
+     */
+    private fun transferChannel(input: FileChannel, output: FileChannel) {
+        while (input.position() < input.size()) {
+            val transferred = input.transferTo(input.position(), chunkSize.toLong(), output)
+            if (transferred <= 0) {
+                break
+            }
+            input.position(input.position() + transferred)
+            process(transferred)
+        }
+    }
+
+    private fun transferStream(input: InputStream, output: FileOutputStream) {
+        val buf = ByteArray(chunkSize)
+        var read = input.read(buf)
+
+        while (read >= 0) {
+            output.write(buf, 0, read)
+            checksums?.update(buf, 0, read)
+            process(read.toLong())
+            read = input.read(buf)
+        }
+    }
+
+    /**
+     * Download file in parts concurrently (e.g using HTTP byte ranges).
+     * Target file is preallocated and each part is written directly at its position.
+     * Reader should open stream of given range and pass it to the download callback.
+     * Parts are not downloaded in order, so checksums (if needed) are computed from downloaded file.
+     */
+    fun downloadRanges(ranges: List<LongRange>, target: File, reader: (LongRange, (InputStream) -> Unit) -> Unit) {
+        common.progress {
+            updater { update(currentProgress(target)) }
+            target.parentFile.mkdirs()
+            startTime = System.currentTimeMillis()
+            tracker?.expect(size)
+            checksums?.reset()
+
+            var finished = false
+            try {
+                RandomAccessFile(target, "rw").use { file ->
+                    file.setLength(size)
+                    common.parallel.poolEach(ranges.size, ranges) { range ->
+                        reader(range) { input -> downloadRange(input, file.channel, range) }
+                    }
+                }
+                finished = true
+            } finally {
+                if (!finished) {
+                    target.delete()
+                }
+            }
+        }
+    }
+
+    private fun downloadRange(input: InputStream, channel: FileChannel, range: LongRange) {
+        input.use { inputStream ->
+            val buf = ByteArray(chunkSize)
+            var position = range.first
+            var read = inputStream.read(buf)
+
+            while (read >= 0) {
+                if (position + read > range.last + 1) {
+                    throw FileTransferException("Downloaded more bytes than expected for range '$range'!")
+                }
+                val buffer = ByteBuffer.wrap(buf, 0, read)
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position)
+                }
+                process(read.toLong())
+                read = inputStream.read(buf)
+            }
+
+            if (position != range.last + 1) {
+                throw FileTransferException("Downloaded less bytes than expected for range '$range'!")
+            }
+        }
+    }
+
+    private fun process(bytes: Long) {
+        processed.addAndGet(bytes)
+        tracker?.record(bytes)
+        rateLimiters.forEach { it.acquire(bytes) }
+    }
+
     private fun currentProgress(file: File): String {
         val fileName = file.name.removeSuffix(FileTransferManager.TMP_SUFFIX)
         return if (size > 0) {
@@ -60,9 +179,10 @@ class FileDownloader(private val common: CommonExtension) {
     }
 
     private fun remainingTime(): Long {
-        if (processedBytes == 0L) return 0
+        val transferredBytes = processedBytes - offset
+        if (transferredBytes <= 0L) return 0
         val elapsedTime = System.currentTimeMillis() - startTime
-        val allTime = (elapsedTime * size / processedBytes)
+        val allTime = (elapsedTime * (size - offset) / transferredBytes)
 
         return (allTime - elapsedTime).coerceAtLeast(0L)
     }
@@ -71,5 +191,17 @@ class FileDownloader(private val common: CommonExtension) {
         const val KILOBYTE = 1024
 
         const val CHUNK_SIZE = 512 * KILOBYTE
+
+        /**
+         * Split file of given size into consecutive byte ranges (inclusive) of similar sizes.
+         */
+        fun ranges(size: Long, count: Int): List<LongRange> {
+            val partSize = size / count
+            return (0 until count).map { index ->
+                val start = index * partSize
+                val end = if (index == count - 1) size - 1 else start + partSize - 1
+                start..end
+            }
+        }
     }
 }
@@ -34,6 +34,13 @@ interface FileTransfer {
         download(fileUrl, this)
     }
 
+    /**
+     * Downloads files with given names from directory available at specified URL to target directory.
+     */
+    fun downloadAllFrom(dirUrl: String, fileNames: Iterable<String>, targetDir: File): List<File> = batch(dirUrl) {
+        fileNames.map { fileName -> File(targetDir, fileName).apply { downloadFrom(dirUrl, fileName, this) } }
+    }
+
     /**
      * Uploads file to directory available at specified URL and set given name.
      */
@@ -56,6 +63,13 @@ interface FileTransfer {
         uploadTo(dirUrl, fileName, source)
     }
 
+    /**
+     * Uploads files to directory available at specified URL.
+     */
+    fun uploadAllTo(dirUrl: String, sources: Iterable<File>) = batch(dirUrl) {
+        sources.forEach { source -> uploadTo(dirUrl, source.name, source) }
+    }
+
     /**
      * Deletes file of given name in directory available at specified URL.
      */
@@ -69,6 +83,13 @@ interface FileTransfer {
         deleteFrom(dirUrl, fileName)
     }
 
+    /**
+     * Deletes files of given names in directory available at specified URL.
+     */
+    fun deleteAll(dirUrl: String, fileNames: Iterable<String>) = batch(dirUrl) {
+        fileNames.forEach { fileName -> deleteFrom(dirUrl, fileName) }
+    }
+
     /**
      * Lists files in directory available at specified URL.
      */
@@ -97,6 +118,13 @@ interface FileTransfer {
      */
     fun stat(dirUrl: String, fileName: String): FileEntry?
 
+    /**
+     * Gets statuses of files with given names in directory at specified URL.
+     */
+    fun statAll(dirUrl: String, fileNames: Iterable<String>): Map<String, FileEntry?> = batch(dirUrl) {
+        fileNames.associateWith { fileName -> stat(dirUrl, fileName) }
+    }
+
     /**
      * Gets file status at specified URL.
      */
@@ -104,4 +132,9 @@ interface FileTransfer {
         val (dirUrl, fileName) = FileUtils.splitUrl(fileUrl)
         return stat(dirUrl, fileName)
     }
+
+    /**
+     * Perform many operations on files in same directory sharing resources (e.g connection, checked directory).
+     */
+    fun <T> batch(dirUrl: String, action: () -> T): T = action()
 }
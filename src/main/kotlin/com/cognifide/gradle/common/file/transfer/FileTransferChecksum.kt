@@ -0,0 +1,136 @@
+package com.cognifide.gradle.common.file.transfer
+
+import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.utils.Formats
+import java.io.File
+
+/**
+ * Options for checksums computed while transferring files.
+ *
+ * Downloaded files could be verified against checksum files published next to them (like in Maven repositories).
+ * Verification is best-effort (files without checksum file are only reported) unless it is strict.
+ * and '.md5' files understood by 'Formats.checksum' could be written, so that transferred files are not read again.
+ */
+@Suppress("TooGenericExceptionCaught")
+class FileTransferChecksum(private val common: CommonExtension) {
+
+    private val logger = common.logger
+
+    /**
+     * Checksums always computed when transferring files (e.g 'MD5', 'SHA-1', 'SHA-256').
+     */
+    val algorithms = common.obj.strings {
+        convention(listOf())
+        common.prop.list("fileTransfer.checksum.algorithms")?.let { set(it) }
+    }
+
+    /**
+     * Controls if downloaded files are verified against checksum files published next to them.
+     */
+    val verify = common.obj.boolean {
+        convention(false)
+        common.prop.boolean("fileTransfer.checksum.verify")?.let { set(it) }
+    }
+
+    /**
+     * Controls if downloading file fails when no checksum file is found to verify it (instead of only reporting it).
+     */
+    val strict = common.obj.boolean {
+        convention(false)
+        common.prop.boolean("fileTransfer.checksum.strict")?.let { set(it) }
+    }
+
+    /**
+     * Extensions of checksum files looked up in order when verifying downloaded files.
+     */
+    val sidecars = common.obj.strings {
+        convention(listOf(ChecksumAlgorithm.SHA256, ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5).map { it.extension })
+        common.prop.list("fileTransfer.checksum.sidecars")?.let { set(it) }
+    }
+
+    /**
+     * Controls if '.md5' files are saved next to downloaded files and uploaded sources.
+     */
+    val write = common.obj.boolean {
+        convention(false)
+        common.prop.boolean("fileTransfer.checksum.write")?.let { set(it) }
+    }
+
+    /**
+     * Read checksum published next to file to be downloaded. Only first existing checksum file is used.
+     * When none is found, fails if verification is strict.
+     */
+    fun expected(transfer: FileTransfer, dirUrl: String, fileName: String, target: File): Pair<ChecksumAlgorithm, String>? {
+        if (!verify.get()) {
+            return null
+        }
+        sidecars.get().forEach { extension ->
+            val algorithm = ChecksumAlgorithm.of(extension)
+            val sidecar = File(target.parentFile, "${target.name}.$extension${FileTransferManager.TMP_SUFFIX}")
+            try {
+                sidecar.delete()
+                transfer.downloadFrom(dirUrl, "$fileName.$extension", sidecar)
+                return algorithm to parse(sidecar.readText())
+            } catch (e: Exception) {
+                logger.debug("Cannot read checksum file at URL '$dirUrl/$fileName.$extension'", e)
+            } finally {
+                sidecar.delete()
+            }
+        }
+        val message = "Cannot verify file downloaded from URL '$dirUrl/$fileName' as of no checksum file found with extensions: ${sidecars.get()}"
+        if (strict.get()) {
+            throw FileTransferException(message)
+        }
+        logger.warn(message)
+        return null
+    }
+
+    /**
+     * Extract checksum from file content (e.g Maven-style 'hex' or 'hex  file-name').
+     */
+    private fun parse(text: String) = text.trim().split(Regex("\\s+")).first().lowercase()
+
+    /**
+     * Algorithms of checksums which could be needed to verify downloaded file (depending on checksum file found).
+     */
+    val verifiable: List<ChecksumAlgorithm>
+        get() = if (verify.get()) sidecars.get().map { ChecksumAlgorithm.of(it) } else listOf()
+
+    /**
+     * Create checksums to be computed when transferring file (or null if not needed at all).
+     */
+    fun create(expected: ChecksumAlgorithm? = null): FileChecksums? = create(listOfNotNull(expected))
+
+    /**
+     * Create checksums to be computed when transferring file (or null if not needed at all).
+     */
+    fun create(expected: Collection<ChecksumAlgorithm>): FileChecksums? {
+        val all = algorithms.get().map { ChecksumAlgorithm.of(it) }.toMutableSet()
+        all += expected
+        if (write.get()) {
+            all += ChecksumAlgorithm.MD5
+        }
+        return all.takeIf { it.isNotEmpty() }?.let { FileChecksums(it) }
+    }
+
+    /**
+     * Compare computed checksum of downloaded file with expected one.
+     */
+    fun verify(fileUrl: String, file: File, checksums: FileChecksums, expected: Pair<ChecksumAlgorithm, String>?) {
+        val (algorithm, value) = expected ?: return
+        val actual = checksums[algorithm]
+        if (!value.equals(actual, true)) {
+            throw FileTransferException("Downloaded file '$file' from URL '$fileUrl' has ${algorithm.digestName} checksum '$actual' but expected is '$value'!")
+        }
+        logger.info("Verified ${algorithm.digestName} checksum of file downloaded from URL '$fileUrl'")
+    }
+
+    /**
+     * Save computed MD5 checksum next to file.
+     */
+    fun write(file: File, checksums: FileChecksums) {
+        if (write.get()) {
+            checksums[ChecksumAlgorithm.MD5]?.let { Formats.toChecksumFile(file).writeText(it) }
+        }
+    }
+}
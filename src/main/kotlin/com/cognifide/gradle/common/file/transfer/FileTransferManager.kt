@@ -2,6 +2,7 @@ package com.cognifide.gradle.common.file.transfer
 
 import com.cognifide.gradle.common.CommonExtension
 import com.cognifide.gradle.common.file.FileException
+import com.cognifide.gradle.common.file.FileLocks
 import com.cognifide.gradle.common.file.transfer.generic.CustomFileTransfer
 import com.cognifide.gradle.common.file.transfer.generic.PathFileTransfer
 import com.cognifide.gradle.common.file.transfer.generic.UrlFileTransfer
@@ -12,6 +13,11 @@ import com.cognifide.gradle.common.file.transfer.smb.SmbFileTransfer
 import com.cognifide.gradle.common.utils.Formats
 import com.cognifide.gradle.common.utils.using
 import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Facade for transferring files over multiple protocols HTTP/SFTP/SMB and custom.
@@ -20,6 +26,7 @@ import java.io.File
  * Prevents unnecessary download if file on local server already exist.
  * Prevents unnecessary uploads if file on remote servers already exist.
  */
+@Suppress("TooManyFunctions")
 class FileTransferManager(private val common: CommonExtension) : FileTransfer {
 
     private val logger = common.project.logger
@@ -38,6 +45,58 @@ class FileTransferManager(private val common: CommonExtension) : FileTransfer {
         common.prop.string("fileTransfer.domain")?.let { set(it) }
     }
 
+    /**
+     * Controls if interrupted downloads are continued instead of being started over (if transfer supports it).
+     */
+    val resume = common.obj.boolean {
+        convention(true)
+        common.prop.boolean("fileTransfer.resume")?.let { set(it) }
+    }
+
+    /**
+     * Controls if already downloaded files are downloaded again when remote file has changed (if transfer supports it).
+     * Validators of downloaded files (like entity tag) are saved next to them.
+     */
+    val revalidate = common.obj.boolean {
+        convention(false)
+        common.prop.boolean("fileTransfer.revalidate")?.let { set(it) }
+    }
+
+    /**
+     * Controls count of files transferred in parallel by batch operations.
+     */
+    val parallelLevel = common.obj.int {
+        convention(3)
+        common.prop.int("fileTransfer.parallelLevel")?.let { set(it) }
+    }
+
+    /**
+     * Maximum number of bytes per second transferred by all transfers together (e.g '20MB').
+     */
+    val rateLimit = common.obj.long {
+        common.prop.string("fileTransfer.rateLimit")?.let { set(Formats.fileSizeHumanToBytes(it)) }
+    }
+
+    /**
+     * Limiter shared by all projects in build, so that limit is applied to whole build.
+     */
+    val rateLimiter: FileTransferRateLimiter?
+        get() = rateLimit.orNull?.let { limit ->
+            common.buildScope.computeOnce("${FileTransferRateLimiter::class.java.canonicalName}_$limit") { FileTransferRateLimiter(limit) }
+        }
+
+    /**
+     * Checksums computed while transferring files.
+     */
+    val checksum = FileTransferChecksum(common)
+
+    fun checksum(options: FileTransferChecksum.() -> Unit) = checksum.using(options)
+
+    /**
+     * Measures bytes transferred by all operations performed by this manager.
+     */
+    val meter = FileTransferTracker()
+
     val credentials: Pair<String, String>
         get() = if (user.orNull.isNullOrBlank() && password.orNull.isNullOrBlank())
             user.get() to password.get()
@@ -130,9 +189,70 @@ class FileTransferManager(private val common: CommonExtension) : FileTransfer {
 
     /**
      * Downloads file of given name from directory at specified URL using dedicated transfer type.
+     *
+     * Concurrent downloads of same URL within build (e.g by projects configured in parallel) are coalesced,
+     * so that file is downloaded once and others wait for it. Target file is also locked against other processes.
      */
+    @Suppress("TooGenericExceptionCaught")
     fun downloadUsing(transfer: FileTransfer, dirUrl: String, fileName: String, target: File) {
-        if (target.exists()) {
+        val fileUrl = "$dirUrl/$fileName"
+        val flight = CompletableFuture<File>()
+        val leading = downloadFlights.putIfAbsent(fileUrl, flight)
+        if (leading != null) {
+            downloadFollowing(fileUrl, leading, target)
+            return
+        }
+
+        try {
+            FileLocks.lock(lockFile(target)) { downloadLocked(transfer, dirUrl, fileName, target) }
+            flight.complete(target)
+        } catch (e: Exception) {
+            flight.completeExceptionally(e)
+            throw e
+        } finally {
+            downloadFlights.remove(fileUrl, flight)
+        }
+    }
+
+    /**
+     * Downloads in progress within whole build.
+     */
+    private val downloadFlights: MutableMap<String, CompletableFuture<File>>
+        get() = common.buildScope.computeOnce("${FileTransferManager::class.java.canonicalName}_downloadFlights") { ConcurrentHashMap() }
+
+    /**
+     * Wait for download of same URL started by other thread then share its result.
+     */
+    private fun downloadFollowing(fileUrl: String, leading: CompletableFuture<File>, target: File) {
+        logger.info("Waiting for download of file from URL '$fileUrl' already in progress")
+        val downloaded = try {
+            leading.join()
+        } catch (e: CompletionException) {
+            throw FileTransferException("Cannot download file from URL '$fileUrl' (failed in concurrent download). Cause: ${e.cause?.message}", e.cause ?: e)
+        }
+        if (downloaded.canonicalFile == target.canonicalFile || target.exists()) {
+            return
+        }
+
+        FileLocks.lock(lockFile(target)) {
+            if (!target.exists()) {
+                val tmp = File(target.parentFile, "${target.name}$TMP_SUFFIX")
+                downloaded.copyTo(tmp, true)
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING)
+                logger.info("Copied file downloaded concurrently from URL '$fileUrl' to '$target'")
+            }
+        }
+    }
+
+    /**
+     * Lock files are kept outside of target directories, so that they are not polluted.
+     */
+    private fun lockFile(target: File) = common.project.gradle.gradleUserHomeDir
+        .resolve("$LOCKS_DIR/${Formats.toMd5(target.absolutePath)}.lock")
+
+    private fun downloadLocked(transfer: FileTransfer, dirUrl: String, fileName: String, target: File) {
+        val revalidating = revalidating(transfer)
+        if (target.exists() && !revalidating) {
             logger.info("Skipping downloading file from URL '$dirUrl/$fileName' to '$target' as of it already exists.")
             return
         }
@@ -140,15 +260,177 @@ class FileTransferManager(private val common: CommonExtension) : FileTransfer {
         target.parentFile.mkdirs()
 
         val tmp = File(target.parentFile, "${target.name}$TMP_SUFFIX")
-        if (tmp.exists()) {
+        val started = System.currentTimeMillis()
+        val tracker = tracker()
+        val checksums = checksum.create(checksum.verifiable)
+
+        val downloaded = FileTransferTracker.track(tracker) {
+            FileChecksums.compute(checksums) {
+                when {
+                    revalidating -> downloadRevalidated(transfer as RevalidatingFileTransfer, dirUrl, fileName, tmp, target)
+                    resume.get() && transfer is ResumableFileTransfer -> downloadResumable(transfer, dirUrl, fileName, tmp).let { true }
+                    else -> {
+                        if (tmp.exists()) {
+                            tmp.delete()
+                        }
+                        transfer.downloadFrom(dirUrl, fileName, tmp)
+                        true
+                    }
+                }
+            }
+        }
+        if (!downloaded) {
+            logger.info("Skipping downloading file from URL '$dirUrl/$fileName' to '$target' as of it is up-to-date.")
+            return
+        }
+
+        checksums?.let { verifyChecksums(transfer, dirUrl, fileName, tmp, target, it) }
+        replace(tmp, target)
+        checksums?.let { checksum.write(target, it) }
+
+        logger.info("Downloaded file from URL '$dirUrl/$fileName' to '$target' in ${Formats.durationWordsSince(started)}" +
+            " (${Formats.fileSizeBytesToHuman(tracker.rate)}/s)")
+    }
+
+    /**
+     * Downloads files of given names from directory at specified URL to target directory.
+     */
+    override fun downloadAllFrom(dirUrl: String, fileNames: Iterable<String>, targetDir: File) =
+        downloadAllUsing(handling(dirUrl), dirUrl, fileNames, targetDir)
+
+    /**
+     * Downloads files of given names from directory at specified URL using dedicated transfer type.
+     * Files are downloaded in parallel (if transfer supports it) and each of them is locked separately.
+     */
+    fun downloadAllUsing(transfer: FileTransferHandler, dirUrl: String, fileNames: Iterable<String>, targetDir: File): List<File> {
+        val targets = fileNames.map { File(targetDir, it) }
+        eachBounded(transfer, targets.filter { !it.exists() || revalidating(transfer) }) { batch ->
+            transfer.batch(dirUrl) { batch.forEach { target -> downloadUsing(transfer, dirUrl, target.name, target) } }
+        }
+        return targets
+    }
+
+    @Suppress("LongParameterList")
+    private fun verifyChecksums(transfer: FileTransfer, dirUrl: String, fileName: String, tmp: File, target: File, checksums: FileChecksums) {
+        try {
+            val expected = checksum.expected(transfer, dirUrl, fileName, target)
+            checksums.complete(tmp)
+            checksum.verify("$dirUrl/$fileName", tmp, checksums, expected)
+        } catch (e: FileTransferException) {
             tmp.delete()
+            throw e
         }
+    }
 
-        val started = System.currentTimeMillis()
-        transfer.downloadFrom(dirUrl, fileName, tmp)
-        tmp.renameTo(target)
+    /**
+     * Check if already downloaded files are revalidated when downloading using particular transfer.
+     */
+    fun revalidating(transfer: FileTransfer) = revalidate.get() && transfer is RevalidatingFileTransfer
+
+    /**
+     * Downloads file only when it is missing or remote file has changed since previous download.
+     * Validators of downloaded file are saved next to temporary file and moved with it when download succeeds.
+     */
+    private fun downloadRevalidated(transfer: RevalidatingFileTransfer, dirUrl: String, fileName: String, tmp: File, target: File): Boolean {
+        val tmpVersionFile = File(tmp.parentFile, "${tmp.name}$VERSION_SUFFIX")
+        val version = when {
+            target.exists() -> {
+                val validators = FileVersion.read(versionFile(target))?.takeIf { it.etag != null || it.modified != null }
+                    ?: FileVersion(modified = target.lastModified())
+                tmp.delete()
+                transfer.downloadModifiedFrom(dirUrl, fileName, tmp, validators) ?: return false
+            }
+            resume.get() && transfer is ResumableFileTransfer -> downloadResumable(transfer, dirUrl, fileName, tmp)
+            else -> {
+                tmp.delete()
+                transfer.downloadModifiedFrom(dirUrl, fileName, tmp, FileVersion())
+            }
+        }
+        version?.write(tmpVersionFile) ?: tmpVersionFile.delete()
+        return true
+    }
 
-        logger.info("Downloaded file from URL '$dirUrl/$fileName' to '$target' in ${Formats.durationWordsSince(started)}")
+    /**
+     * Replace target file with downloaded one (and its validators when revalidating).
+     * Previously saved checksum is deleted as it may not match anymore.
+     */
+    private fun replace(tmp: File, target: File) {
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        Formats.toChecksumFile(target).delete()
+
+        val tmpVersionFile = File(tmp.parentFile, "${tmp.name}$VERSION_SUFFIX")
+        if (tmpVersionFile.exists()) {
+            Files.move(tmpVersionFile.toPath(), versionFile(target).toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } else {
+            versionFile(target).delete()
+        }
+    }
+
+    private fun versionFile(file: File) = File(file.parentFile, "${file.name}$VERSION_SUFFIX")
+
+    /**
+     * Tracker of single operation propagating bytes to tracker of enclosing operations (e.g scheduled jobs) or to manager meter.
+     */
+    private fun tracker() = FileTransferTracker(FileTransferTracker.current ?: meter)
+
+    /**
+     * Downloads file while keeping partially downloaded file and its remote version for resuming download later.
+     * Partial file is continued only when remote file is still at the same version. Returns version of downloaded file.
+     * Remote version is checked upfront only when partial file exists, otherwise it is determined by download itself.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private fun downloadResumable(transfer: ResumableFileTransfer, dirUrl: String, fileName: String, tmp: File): FileVersion? {
+        val fileUrl = "$dirUrl/$fileName"
+        val versionFile = File(tmp.parentFile, "${tmp.name}$VERSION_SUFFIX")
+        var version = if (tmp.exists()) transfer.version(dirUrl, fileName) else null
+        val size = version?.size
+        val offset = resumeOffset(tmp, versionFile, version)
+
+        if (offset > 0) {
+            logger.info("Resuming downloading file from URL '$fileUrl' to '$tmp' at ${Formats.fileSizeBytesToHuman(offset)}")
+        } else {
+            tmp.delete()
+            versionFile.delete()
+        }
+
+        if (size == null || offset < size) {
+            var restarted = false
+            try {
+                transfer.downloadFrom(dirUrl, fileName, tmp, offset, version) { started ->
+                    restarted = true
+                    version = started
+                    started?.write(versionFile) ?: versionFile.delete()
+                }
+            } catch (e: Exception) {
+                if (offset > 0 && !restarted && tmp.length() <= offset) {
+                    logger.info("Deleting partially downloaded file '$tmp' as it cannot be resumed")
+                    tmp.delete()
+                    versionFile.delete()
+                }
+                throw e
+            }
+        }
+
+        val expectedSize = version?.size
+        if (expectedSize != null && tmp.length() != expectedSize) {
+            tmp.delete()
+            versionFile.delete()
+            throw FileTransferException("Downloaded file from URL '$fileUrl' has size ${tmp.length()} but expected is $expectedSize!")
+        }
+        versionFile.delete()
+        return version
+    }
+
+    /**
+     * Partial file could be continued only when it was downloaded from remote file at same version.
+     */
+    private fun resumeOffset(tmp: File, versionFile: File, version: FileVersion?): Long {
+        val size = version?.size
+        return when {
+            size == null || tmp.length() > size -> 0L
+            FileVersion.read(versionFile) != version -> 0L
+            else -> tmp.length()
+        }
     }
 
     /**
@@ -179,12 +461,79 @@ class FileTransferManager(private val common: CommonExtension) : FileTransfer {
             logger.debug("Cannot check status of uploaded file at URL '$fileUrl'", e)
         }
 
+        uploadTracked(transfer, dirUrl, fileName, source)
+    }
+
+    private fun uploadTracked(transfer: FileTransfer, dirUrl: String, fileName: String, source: File) {
+        val started = System.currentTimeMillis()
+        val tracker = tracker()
+        val checksums = checksum.create()
+        FileTransferTracker.track(tracker) {
+            FileChecksums.compute(checksums) { transfer.uploadTo(dirUrl, fileName, source) }
+        }
+        checksums?.let {
+            it.complete(source)
+            checksum.write(source, it)
+        }
+
+        logger.info("Uploaded file from '$source' to URL '$dirUrl/$fileName' in ${Formats.durationWordsSince(started)}" +
+            " (${Formats.fileSizeBytesToHuman(tracker.rate)}/s)")
+    }
+
+    /**
+     * Uploads files to directory at specified URL.
+     */
+    override fun uploadAllTo(dirUrl: String, sources: Iterable<File>) = uploadAllUsing(handling(dirUrl), dirUrl, sources)
+
+    /**
+     * Uploads files to directory at specified URL using dedicated transfer type.
+     * Files already existing on server are skipped. Others are uploaded in parallel batches (if transfer supports it).
+     */
+    fun uploadAllUsing(transfer: FileTransferHandler, dirUrl: String, sources: Iterable<File>) {
+        val existing = try {
+            transfer.statAll(dirUrl, sources.map { it.name }).filterValues { it != null }.keys // 'stat' may be unsupported
+        } catch (e: FileException) {
+            logger.debug("Cannot check status of uploaded files at URL '$dirUrl'", e)
+            setOf()
+        }
+        val (skipped, uploaded) = sources.partition { existing.contains(it.name) }
+        skipped.forEach { logger.info("Skipping uploading file to URL '$dirUrl/${it.name}' as of it already exists on server.") }
+
         val started = System.currentTimeMillis()
-        transfer.uploadTo(dirUrl, fileName, source)
+        eachBounded(transfer, uploaded) { batch ->
+            transfer.batch(dirUrl) { batch.forEach { source -> uploadTracked(transfer, dirUrl, source.name, source) } }
+        }
 
-        logger.info("Uploaded file from '$source' to URL '$dirUrl/$fileName' in ${Formats.durationWordsSince(started)}")
+        logger.info("Uploaded ${uploaded.size} file(s) to URL '$dirUrl' in ${Formats.durationWordsSince(started)}")
     }
 
+    /**
+     * Deletes files of given names in directory at specified URL.
+     */
+    override fun deleteAll(dirUrl: String, fileNames: Iterable<String>) = handling(dirUrl).deleteAll(dirUrl, fileNames)
+
+    /**
+     * Gets statuses of files with given names in directory at specified URL.
+     */
+    override fun statAll(dirUrl: String, fileNames: Iterable<String>): Map<String, FileEntry?> = handling(dirUrl).statAll(dirUrl, fileNames)
+
+    /**
+     * Split items into batches processed in parallel (using bounded thread pool) or sequentially.
+     */
+    private fun <T> eachBounded(transfer: FileTransferHandler, items: List<T>, action: (List<T>) -> Unit) {
+        val level = parallelLevel.get().coerceAtMost(items.size)
+        when {
+            items.isEmpty() -> return
+            level <= 1 || !transfer.parallelable.get() -> action(items)
+            else -> common.parallel.poolEach(level, items.withIndex().groupBy({ it.index % level }, { it.value }).values) { action(it) }
+        }
+    }
+
+    /**
+     * Transfer many files concurrently (with global and per host limits) and report aggregated progress.
+     */
+    fun schedule(options: FileTransferScheduler.() -> Unit) = FileTransferScheduler(common, this).apply(options).run()
+
     /**
      * Lists files in directory available at specified URL.
      */
@@ -241,5 +590,9 @@ class FileTransferManager(private val common: CommonExtension) : FileTransfer {
         const val NAME = "manager"
 
         const val TMP_SUFFIX = ".tmp"
+
+        const val VERSION_SUFFIX = ".version"
+
+        const val LOCKS_DIR = "caches/gradle-common-plugin/locks"
     }
 }
@@ -0,0 +1,52 @@
+package com.cognifide.gradle.common.file.transfer
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Token bucket limiting count of bytes transferred per second.
+ *
+ * Bucket holds at most one second of tokens, so short bursts are allowed after idle periods.
+ * May be shared by many threads; each of them waits for its own reservation without blocking others.
+ */
+class FileTransferRateLimiter internal constructor(
+    val bytesPerSecond: Long,
+    private val nanoTime: () -> Long,
+    private val sleep: (Long) -> Unit
+) {
+
+    constructor(bytesPerSecond: Long) : this(bytesPerSecond, System::nanoTime, TimeUnit.NANOSECONDS::sleep)
+
+    init {
+        if (bytesPerSecond <= 0) {
+            throw FileTransferException("Transfer rate limit must be greater than zero but is '$bytesPerSecond'!")
+        }
+    }
+
+    private var tokens = bytesPerSecond.toDouble()
+
+    private var refilled = nanoTime()
+
+    /**
+     * Reserve tokens for given count of bytes and wait until they are available.
+     * Tokens may go below zero, then next callers wait longer, so that average rate is kept.
+     */
+    fun acquire(bytes: Long) {
+        if (bytes <= 0) {
+            return
+        }
+        val waitNanos = synchronized(this) {
+            val now = nanoTime()
+            tokens = (tokens + (now - refilled).toDouble() * bytesPerSecond / NANOS_PER_SECOND).coerceAtMost(bytesPerSecond.toDouble())
+            refilled = now
+            tokens -= bytes
+            if (tokens >= 0) 0L else (-tokens * NANOS_PER_SECOND / bytesPerSecond).toLong()
+        }
+        if (waitNanos > 0) {
+            sleep(waitNanos)
+        }
+    }
+
+    companion object {
+        private const val NANOS_PER_SECOND = 1_000_000_000.0
+    }
+}
@@ -0,0 +1,172 @@
+package com.cognifide.gradle.common.file.transfer
+
+import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.build.ProgressIndicator
+import com.cognifide.gradle.common.utils.Formats
+import org.apache.http.client.utils.URIBuilder
+import java.io.File
+import java.util.*
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
+
+/**
+ * Queue of download and upload jobs executed concurrently with global and per host limits.
+ *
+ * Hosts are served in round-robin order, so that single server with many files does not starve others.
+ * Jobs using transfers which cannot be used in parallel are executed sequentially at the end.
+ * Progress of all jobs (transferred bytes, rate and time left) is reported by single indicator.
+ */
+@Suppress("TooGenericExceptionCaught")
+class FileTransferScheduler(private val common: CommonExtension, private val manager: FileTransferManager) {
+
+    /**
+     * Maximum number of files transferred at once (at least one).
+     */
+    val maxConcurrency = common.obj.int {
+        convention(manager.parallelLevel)
+        common.prop.int("fileTransfer.scheduler.maxConcurrency")?.let { set(it) }
+    }
+
+    /**
+     * Maximum number of files transferred at once from / to same host (at least one).
+     */
+    val maxPerHost = common.obj.int {
+        convention(2)
+        common.prop.int("fileTransfer.scheduler.maxPerHost")?.let { set(it) }
+    }
+
+    private val jobs = mutableListOf<Job>()
+
+    private class Job(val name: String, val host: String, val transfer: FileTransferHandler, val action: () -> Unit)
+
+    private class Result(val job: Job, val error: Exception?)
+
+    /**
+     * Enqueue downloading file from specified URL.
+     */
+    fun download(fileUrl: String, target: File) {
+        val transfer = manager.handling(fileUrl)
+        jobs += Job("Downloading '${target.name}'", host(fileUrl), transfer) { manager.downloadUsing(transfer, fileUrl, target) }
+    }
+
+    /**
+     * Enqueue downloading file from specified URL to directory with preserving file name.
+     */
+    fun downloadTo(fileUrl: String, dir: File) = download(fileUrl, File(dir, FileUtils.nameFromUrl(fileUrl)))
+
+    /**
+     * Enqueue uploading file to specified URL.
+     */
+    fun upload(fileUrl: String, source: File) {
+        val transfer = manager.handling(fileUrl)
+        jobs += Job("Uploading '${source.name}'", host(fileUrl), transfer) { manager.uploadUsing(transfer, fileUrl, source) }
+    }
+
+    /**
+     * Enqueue uploading file to directory at specified URL.
+     */
+    fun uploadTo(dirUrl: String, source: File) = upload("$dirUrl/${source.name}", source)
+
+    /**
+     * Execute all enqueued jobs and wait until they are finished.
+     * Failure of particular job does not stop others. All failures are reported at the end.
+     */
+    fun run() {
+        val (parallel, sequential) = jobs.partition { it.transfer.parallelable.get() }
+        jobs.clear()
+
+        val tracker = FileTransferTracker(manager.meter)
+        val errors = mutableListOf<Exception>()
+
+        common.progress {
+            step = "Transferring files"
+            total = (parallel.size + sequential.size).toLong()
+            updater { update(progressMessage(tracker)) }
+
+            errors += runParallel(parallel, tracker)
+            sequential.forEach { job ->
+                increment(job.name) { execute(job, tracker).error?.let { errors += it } }
+            }
+        }
+
+        if (errors.isNotEmpty()) {
+            throw FileTransferException("Cannot transfer ${errors.size} file(s). Cause: ${errors.first().message}", errors.first()).apply {
+                errors.drop(1).forEach { addSuppressed(it) }
+            }
+        }
+    }
+
+    private fun ProgressIndicator.runParallel(jobs: List<Job>, tracker: FileTransferTracker): List<Exception> {
+        if (jobs.isEmpty()) {
+            return listOf()
+        }
+
+        val queues = jobs.groupByTo(LinkedHashMap()) { it.host }.mapValues { LinkedList(it.value) }
+        val hosts = LinkedList(queues.keys)
+        val active = mutableMapOf<String, Int>()
+        val errors = mutableListOf<Exception>()
+        val concurrency = maxConcurrency.get().coerceAtLeast(1)
+        val perHost = maxPerHost.get().coerceAtLeast(1)
+        val executor = Executors.newFixedThreadPool(concurrency.coerceAtMost(jobs.size))
+        val completion = ExecutorCompletionService<Result>(executor)
+        var running = 0
+
+        try {
+            while (running > 0 || queues.values.any { it.isNotEmpty() }) {
+                while (running < concurrency) {
+                    val host = nextHost(hosts, queues, active, perHost) ?: break
+                    val job = queues.getValue(host).poll()
+                    active[host] = (active[host] ?: 0) + 1
+                    running++
+                    completion.submit { execute(job, tracker) }
+                }
+
+                val result = completion.take().get()
+                active[result.job.host] = active.getValue(result.job.host) - 1
+                running--
+                increment(result.job.name)
+                result.error?.let { errors += it }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+
+        return errors
+    }
+
+    /**
+     * Find next host having pending jobs and free slot. Rotate hosts to serve them fairly.
+     */
+    private fun nextHost(hosts: LinkedList<String>, queues: Map<String, Queue<Job>>, active: Map<String, Int>, perHost: Int): String? {
+        repeat(hosts.size) {
+            val host = hosts.removeFirst().also { hosts.addLast(it) }
+            if (queues.getValue(host).isNotEmpty() && (active[host] ?: 0) < perHost) {
+                return host
+            }
+        }
+        return null
+    }
+
+    private fun execute(job: Job, tracker: FileTransferTracker) = try {
+        FileTransferTracker.track(tracker) { job.action() }
+        Result(job, null)
+    } catch (e: Exception) {
+        common.logger.debug("File transfer job '${job.name}' failed", e)
+        Result(job, e)
+    }
+
+    private fun progressMessage(tracker: FileTransferTracker) = tracker.run {
+        "${Formats.fileSizeBytesToHuman(processedBytes)}/${Formats.fileSizeBytesToHuman(expectedBytes)}" +
+            " (${Formats.fileSizeBytesToHuman(throughput)}/s, time left: ${Formats.duration(remainingTime)})"
+    }
+
+    private fun host(fileUrl: String) = try {
+        URIBuilder(fileUrl).host
+    } catch (e: Exception) {
+        null
+    } ?: HOST_LOCAL
+
+    companion object {
+        const val HOST_LOCAL = "local"
+    }
+}
@@ -0,0 +1,106 @@
+package com.cognifide.gradle.common.file.transfer
+
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.pow
+
+/**
+ * Aggregates bytes transferred by downloaders and uploaders created within tracked block (e.g by scheduled jobs).
+ *
+ * Recorded bytes are propagated to parent tracker, so that overall throughput could be measured too.
+ */
+class FileTransferTracker internal constructor(private val parent: FileTransferTracker?, private val currentTime: () -> Long) {
+
+    constructor(parent: FileTransferTracker? = null) : this(parent, System::currentTimeMillis)
+
+    private val started = currentTime()
+
+    private val expected = AtomicLong()
+
+    private val processed = AtomicLong()
+
+    private var windowStarted = started
+
+    private var windowBytes = 0L
+
+    private var average = -1.0
+
+    /**
+     * Total size of files being transferred (known only after each transfer is started).
+     */
+    val expectedBytes: Long get() = expected.get()
+
+    val processedBytes: Long get() = processed.get()
+
+    /**
+     * Average transfer rate in bytes per second.
+     */
+    val rate: Long get() = (currentTime() - started).takeIf { it > 0 }?.let { processedBytes * MILLIS_PER_SECOND / it } ?: 0L
+
+    /**
+     * Current transfer rate in bytes per second (exponential moving average over one second windows).
+     * Reacts to throughput changes faster than overall average rate.
+     */
+    val throughput: Long
+        get() = synchronized(this) {
+            slide(currentTime())
+            if (average < 0) rate else average.toLong()
+        }
+
+    /**
+     * Estimated time in milliseconds needed to transfer remaining bytes of files already started.
+     */
+    val remainingTime: Long get() = throughput.takeIf { it > 0 }?.let { (expectedBytes - processedBytes).coerceAtLeast(0L) * MILLIS_PER_SECOND / it } ?: 0L
+
+    fun expect(bytes: Long) {
+        expected.addAndGet(bytes)
+        parent?.expect(bytes)
+    }
+
+    fun record(bytes: Long) {
+        processed.addAndGet(bytes)
+        synchronized(this) {
+            slide(currentTime())
+            windowBytes += bytes
+        }
+        parent?.record(bytes)
+    }
+
+    /**
+     * Close elapsed windows and include their rates in moving average (idle windows are decreasing it).
+     */
+    private fun slide(now: Long) {
+        val windows = (now - windowStarted) / MILLIS_PER_SECOND
+        if (windows <= 0) {
+            return
+        }
+        val windowRate = windowBytes.toDouble()
+        average = if (average < 0) windowRate else SMOOTHING * windowRate + (1 - SMOOTHING) * average
+        average *= (1 - SMOOTHING).pow((windows - 1).toDouble())
+        windowBytes = 0L
+        windowStarted += windows * MILLIS_PER_SECOND
+    }
+
+    companion object {
+
+        private const val MILLIS_PER_SECOND = 1000L
+
+        private const val SMOOTHING = 0.3
+
+        private val CURRENT = ThreadLocal<FileTransferTracker?>()
+
+        /**
+         * Tracker of transfers performed by current thread.
+         */
+        val current: FileTransferTracker? get() = CURRENT.get()
+
+        fun <T> track(tracker: FileTransferTracker, action: () -> T): T {
+            val previous = CURRENT.get()
+            CURRENT.set(tracker)
+            try {
+                return action()
+            } finally {
+                CURRENT.set(previous)
+            }
+        }
+    }
+}
@@ -3,7 +3,10 @@ package com.cognifide.gradle.common.file.transfer
 import com.cognifide.gradle.common.CommonExtension
 import com.cognifide.gradle.common.utils.Formats
 import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
 import java.io.OutputStream
+import java.nio.channels.FileChannel
 
 class FileUploader(private val common: CommonExtension) {
 
@@ -13,6 +16,15 @@ class FileUploader(private val common: CommonExtension) {
 
     private var startTime: Long = -1
 
+    private val tracker = FileTransferTracker.current
+
+    private val checksums = FileChecksums.current
+
+    /**
+     * Limiters slowing down transfer (e.g specific to transfer type and global one).
+     */
+    var rateLimiters: List<FileTransferRateLimiter> = listOf()
+
     var chunkSize: Int = common.prop.int("fileTransfer.uploader.chunkSize") ?: CHUNK_SIZE
 
     fun upload(file: File, output: OutputStream, cleanup: (File) -> Unit = {}) {
@@ -22,17 +34,18 @@ class FileUploader(private val common: CommonExtension) {
             file.inputStream().use { input ->
                 size = file.length()
                 startTime = System.currentTimeMillis()
+                tracker?.expect(size)
+                checksums?.reset()
 
                 var finished = false
 
                 try {
-                    val buf = ByteArray(chunkSize)
-                    var read = input.read(buf)
-
-                    while (read >= 0) {
-                        output.write(buf, 0, read)
-                        processedBytes += read.toLong()
-                        read = input.read(buf)
+                    when (output) {
+                        is FileOutputStream -> when (checksums) {
+                            null -> transferChannel(input.channel, output.channel)
+                            else -> transferStream(input, output)
+                        }
+                        else -> transferStream(input, output)
                     }
 
                     output.flush()
@@ -47,6 +60,39 @@ class FileUploader(private val common: CommonExtension) {
         }
     }
 
+    /**
+     * Copy to local file without copying bytes through user space.
+     * Transferring in chunks keeps progress reporting working.
+     */
+    private fun transferChannel(input: FileChannel, output: FileChannel) {
+        while (input.position() < input.size()) {
+            val transferred = input.transferTo(input.position(), chunkSize.toLong(), output)
+            if (transferred <= 0) {
+                break
+            }
+            input.position(input.position() + transferred)
+            process(transferred)
+        }
+    }
+
+    private fun transferStream(input: FileInputStream, output: OutputStream) {
+        val buf = ByteArray(chunkSize)
+        var read = input.read(buf)
+
+        while (read >= 0) {
+            output.write(buf, 0, read)
+            checksums?.update(buf, 0, read)
+            process(read.toLong())
+            read = input.read(buf)
+        }
+    }
+
+    private fun process(bytes: Long) {
+        processedBytes += bytes
+        tracker?.record(bytes)
+        rateLimiters.forEach { it.acquire(bytes) }
+    }
+
     private fun currentProgress(file: File): String {
         return if (size > 0) {
             "Uploading: ${file.name} | ${Formats.fileSizeBytesToHuman(processedBytes)}/${Formats.fileSizeBytesToHuman(size)}" +
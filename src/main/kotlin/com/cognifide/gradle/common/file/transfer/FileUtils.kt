@@ -3,6 +3,7 @@ package com.cognifide.gradle.common.file.transfer
 import com.cognifide.gradle.common.build.DependencyFile
 import com.cognifide.gradle.common.utils.Formats
 import org.apache.commons.io.FilenameUtils
+import java.io.InputStream
 
 object FileUtils {
 
@@ -30,4 +31,19 @@ object FileUtils {
             dirUrl to fileName
         }
     }
+
+    /**
+     * Skip bytes of stream (e.g when resuming download) using seeking if stream supports it.
+     */
+    fun skip(input: InputStream, offset: Long) = input.apply {
+        var remaining = offset
+        while (remaining > 0) {
+            val skipped = skip(remaining)
+            remaining -= when {
+                skipped > 0 -> skipped
+                read() >= 0 -> 1
+                else -> throw FileTransferException("Cannot skip $offset byte(s) as of stream ended prematurely!")
+            }
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.cognifide.gradle.common.file.transfer
+
+import com.cognifide.gradle.common.utils.Formats
+import java.io.File
+import java.io.IOException
+
+/**
+ * Identifies version of remote file.
+ * Used to check if partially downloaded file is still matching remote one so that download could be resumed
+ * and if previously downloaded file needs to be downloaded again.
+ */
+data class FileVersion(
+    val size: Long? = null,
+    val modified: Long? = null,
+    val etag: String? = null
+) {
+
+    fun write(file: File) {
+        file.writeText(Formats.toJson(this, false))
+    }
+
+    companion object {
+
+        fun read(file: File): FileVersion? = file.takeIf { it.exists() }?.run {
+            try {
+                Formats.toObjectFromJson<FileVersion>(readText())
+            } catch (e: IOException) {
+                null
+            }
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.cognifide.gradle.common.file.transfer
 
 import com.cognifide.gradle.common.CommonExtension
-import com.cognifide.gradle.common.utils.Patterns
+import com.cognifide.gradle.common.utils.PatternSet
 
 abstract class ProtocolFileTransfer(common: CommonExtension) : AbstractFileTransfer(common) {
 
     abstract val protocols: List<String>
 
+    private var protocolPatterns: PatternSet? = null
+
+    /**
+     * Protocol matchers compiled once (recompiled only when protocols are changed).
+     */
+    private val protocolPatternSet: PatternSet
+        get() = protocols.let { current ->
+            protocolPatterns?.takeIf { it.matchers == current } ?: PatternSet(current).also { protocolPatterns = it }
+        }
+
     override fun handles(fileUrl: String): Boolean {
-        return !fileUrl.isBlank() && Patterns.wildcard(fileUrl, protocols)
+        return !fileUrl.isBlank() && protocolPatternSet.matches(fileUrl)
     }
 }
@@ -0,0 +1,51 @@
+package com.cognifide.gradle.common.file.transfer
+
+import java.io.File
+
+/**
+ * File transfer able to continue interrupted download of partially downloaded file.
+ */
+interface ResumableFileTransfer : FileTransfer {
+
+    /**
+     * Gets version of file with given name in directory at specified URL.
+     * Size of version is not known (null) if file cannot be downloaded partially.
+     */
+    fun version(dirUrl: String, fileName: String): FileVersion?
+
+    /**
+     * Gets version of file at specified URL.
+     */
+    fun version(fileUrl: String): FileVersion? {
+        val (dirUrl, fileName) = FileUtils.splitUrl(fileUrl)
+        return version(dirUrl, fileName)
+    }
+
+    /**
+     * Downloads file with given name from directory available at specified URL starting at given offset.
+     * Downloaded bytes are appended to target file which is not deleted when download fails.
+     */
+    fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long)
+
+    /**
+     * Downloads file with given name from directory available at specified URL starting at given offset.
+     * When download starts from beginning (also when remote side cannot continue at offset), version of downloaded file
+     * is passed to callback before any byte is written, so that partial file could be resumed later.
+     */
+    fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long, started: (FileVersion?) -> Unit) {
+        if (offset <= 0) {
+            started(version(dirUrl, fileName))
+        }
+        downloadFrom(dirUrl, fileName, target, offset)
+    }
+
+    /**
+     * Downloads file with given name from directory available at specified URL starting at given offset.
+     * Download is continued only when remote file is still at version of partially downloaded file (if supported),
+     * otherwise it is started from beginning.
+     */
+    @Suppress("LongParameterList")
+    fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long, version: FileVersion?, started: (FileVersion?) -> Unit) {
+        downloadFrom(dirUrl, fileName, target, offset, started)
+    }
+}
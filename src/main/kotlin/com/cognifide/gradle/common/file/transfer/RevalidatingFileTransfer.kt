@@ -0,0 +1,16 @@
+package com.cognifide.gradle.common.file.transfer
+
+import java.io.File
+
+/**
+ * File transfer able to download file only when remote file has changed since previous download.
+ */
+interface RevalidatingFileTransfer : FileTransfer {
+
+    /**
+     * Downloads file with given name from directory available at specified URL only if it does not match validators
+     * (e.g entity tag or modification time of previously downloaded file).
+     * Returns version of downloaded file to be used as validators next time or null if file is not modified.
+     */
+    fun downloadModifiedFrom(dirUrl: String, fileName: String, target: File, validators: FileVersion): FileVersion?
+}
@@ -17,7 +17,10 @@ class CustomFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common)
 
     override lateinit var protocols: List<String>
 
-    override val parallelable = common.obj.provider { true }
+    /**
+     * Controls if files could be transferred in parallel.
+     */
+    override val parallelable = common.obj.boolean { convention(true) }
 
     /**
      * Register callback responsible for downloading file.
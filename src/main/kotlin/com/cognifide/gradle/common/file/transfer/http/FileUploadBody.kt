@@ -0,0 +1,30 @@
+package com.cognifide.gradle.common.file.transfer.http
+
+import com.cognifide.gradle.common.file.transfer.FileUploader
+import org.apache.commons.io.output.CloseShieldOutputStream
+import org.apache.http.entity.ContentType
+import org.apache.http.entity.mime.MIME
+import org.apache.http.entity.mime.content.AbstractContentBody
+import java.io.File
+import java.io.OutputStream
+
+/**
+ * Multipart body streaming file using uploader, so that progress is reported and file is never buffered in memory.
+ */
+class FileUploadBody(
+    private val file: File,
+    private val fileName: String,
+    contentType: ContentType,
+    private val uploader: FileUploader
+) : AbstractContentBody(contentType) {
+
+    override fun getFilename() = fileName
+
+    override fun getTransferEncoding() = MIME.ENC_BINARY
+
+    override fun getContentLength() = file.length()
+
+    override fun writeTo(out: OutputStream) {
+        uploader.upload(file, CloseShieldOutputStream.wrap(out)) // multipart closing boundary is written after part
+    }
+}
@@ -1,36 +1,289 @@
 package com.cognifide.gradle.common.file.transfer.http
 
 import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.file.transfer.FileDownloader
+import com.cognifide.gradle.common.file.transfer.FileVersion
 import com.cognifide.gradle.common.file.transfer.ProtocolFileTransfer
+import com.cognifide.gradle.common.file.transfer.ResumableFileTransfer
+import com.cognifide.gradle.common.file.transfer.RevalidatingFileTransfer
 import com.cognifide.gradle.common.http.HttpClient
 import com.cognifide.gradle.common.utils.using
+import org.apache.http.HttpHeaders
+import org.apache.http.HttpResponse
+import org.apache.http.HttpStatus
+import org.apache.http.client.utils.DateUtils
+import org.apache.http.entity.mime.MultipartEntityBuilder
+import org.apache.http.protocol.HTTP
 import java.io.File
+import java.util.Date
 
 @Suppress("TooGenericExceptionCaught")
-class HttpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
+class HttpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common), ResumableFileTransfer, RevalidatingFileTransfer {
 
     internal var client = HttpClient(common)
 
     fun client(options: HttpClient.() -> Unit) = client.using(options)
 
+    /**
+     * Number of byte ranges downloaded in parallel (when server supports them).
+     * Value lower or equal to 1 means downloading using single request.
+     */
+    val parallelChunks = common.obj.int {
+        convention(1)
+        common.prop.int("fileTransfer.http.parallelChunks")?.let { set(it) }
+    }
+
+    /**
+     * Minimum size of each byte range downloaded in parallel.
+     * Smaller files are downloaded using fewer ranges or single request.
+     */
+    val parallelChunkMinSize = common.obj.long {
+        convention(PARALLEL_CHUNK_MIN_SIZE)
+        common.prop.long("fileTransfer.http.parallelChunks.minSize")?.let { set(it) }
+    }
+
+    /**
+     * Name of multipart form field containing uploaded file.
+     */
+    val uploadField = common.obj.string {
+        convention("file")
+        common.prop.string("fileTransfer.http.uploadField")?.let { set(it) }
+    }
+
+    /**
+     * Send 'Expect: 100-continue' header, so that request rejected by server (e.g unauthorized) fails before file is sent.
+     */
+    val uploadExpectContinue = common.obj.boolean {
+        convention(true)
+        common.prop.boolean("fileTransfer.http.uploadExpectContinue")?.let { set(it) }
+    }
+
     override val name: String get() = NAME
 
     override val protocols: List<String> get() = listOf("http://*", "https://*")
 
-    override fun downloadFrom(dirUrl: String, fileName: String, target: File) {
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File) = download("$dirUrl/$fileName", target) {}
+
+    private fun download(sourceUrl: String, target: File, started: (FileVersion?) -> Unit) {
+        try {
+            val version = if (parallelChunks.get() > 1) headVersion(sourceUrl) else null
+            val size = version?.size ?: -1L
+            val chunks = if (size > 0) (size / parallelChunkMinSize.get()).coerceIn(1L, parallelChunks.get().toLong()).toInt() else 1
+            if (chunks > 1 && version != null) {
+                started(version)
+                downloadRanges(sourceUrl, target, version, chunks)
+            } else {
+                client.get(sourceUrl) { response ->
+                    common.logger.info("Downloading: $sourceUrl -> $target")
+                    val input = asStream(response)
+                    started(version(response))
+                    downloader { this.size = response.entity.contentLength }.download(input, target)
+                }
+            }
+        } catch (e: Exception) {
+            throw HttpFileException("Cannot download URL '$sourceUrl' to file '$target' using HTTP(s). Cause: ${e.message}", e)
+        }
+    }
+
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long) = downloadFrom(dirUrl, fileName, target, offset) {}
+
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long, started: (FileVersion?) -> Unit) =
+        downloadFrom(dirUrl, fileName, target, offset, null, started)
+
+    /**
+     * Continues downloading using single byte range request being conditional on version of partially downloaded file.
+     * When server ignores byte range, responds with other one or with whole file (e.g as of it has changed),
+     * download is restarted from beginning.
+     * When starting from beginning, parallel chunks could be used, but then partial file is not kept.
+     */
+    @Suppress("LongParameterList")
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long, version: FileVersion?, started: (FileVersion?) -> Unit) {
         val sourceUrl = "$dirUrl/$fileName"
+        if (offset <= 0) {
+            if (parallelChunks.get() > 1) {
+                download(sourceUrl, target, started)
+            } else {
+                downloadPartial(sourceUrl, target, started)
+            }
+            return
+        }
+
+        val resumed = try {
+            client.get(sourceUrl, { response ->
+                when (response.statusLine.statusCode) {
+                    HttpStatus.SC_PARTIAL_CONTENT -> if (contentRange(response)?.first == offset) {
+                        common.logger.info("Downloading: $sourceUrl -> $target (starting at $offset byte(s))")
+                        downloader {
+                            this.offset = offset
+                            this.size = offset + response.entity.contentLength
+                            keepPartial = true
+                        }.download(response.entity.content, target)
+                        true
+                    } else {
+                        common.logger.info("Downloading: $sourceUrl -> $target (byte range not matching, starting from beginning)")
+                        false
+                    }
+                    HttpStatus.SC_OK -> {
+                        common.logger.info("Downloading: $sourceUrl -> $target (byte range not respected, starting from beginning)")
+                        downloadPartial(response, target, started)
+                        true
+                    }
+                    else -> throw HttpFileException("Unexpected response status for byte range request: ${response.statusLine}")
+                }
+            }) {
+                addHeader(HttpHeaders.RANGE, "bytes=$offset-")
+                ifRange(version)?.let { addHeader(HttpHeaders.IF_RANGE, it) }
+            }
+        } catch (e: Exception) {
+            throw HttpFileException("Cannot download URL '$sourceUrl' to file '$target' using HTTP(s). Cause: ${e.message}", e)
+        }
+        if (!resumed) {
+            downloadPartial(sourceUrl, target, started)
+        }
+    }
+
+    /**
+     * Validator making byte range request conditional, so that whole file is sent when remote file has changed.
+     * Weak entity tags cannot be used for that purpose.
+     */
+    private fun ifRange(version: FileVersion?): String? = version?.etag?.takeIf { !it.startsWith("W/") }
+        ?: version?.modified?.let { DateUtils.formatDate(Date(it)) }
 
+    /**
+     * Byte range of partial content actually sent by server.
+     */
+    private fun contentRange(response: HttpResponse): LongRange? = response.getFirstHeader(HttpHeaders.CONTENT_RANGE)?.value
+        ?.let { CONTENT_RANGE.matchEntire(it.trim()) }
+        ?.destructured?.let { (first, last) -> first.toLong()..last.toLong() }
+
+    private fun downloadPartial(sourceUrl: String, target: File, started: (FileVersion?) -> Unit) {
         try {
             client.get(sourceUrl) { response ->
                 common.logger.info("Downloading: $sourceUrl -> $target")
-                downloader { size = response.entity.contentLength }.download(asStream(response), target)
+                downloadPartial(response, target, started)
+            }
+        } catch (e: Exception) {
+            throw HttpFileException("Cannot download URL '$sourceUrl' to file '$target' using HTTP(s). Cause: ${e.message}", e)
+        }
+    }
+
+    private fun HttpClient.downloadPartial(response: HttpResponse, target: File, started: (FileVersion?) -> Unit) {
+        val input = asStream(response)
+        started(version(response))
+        downloader {
+            this.size = response.entity.contentLength
+            keepPartial = true
+        }.download(input, target)
+    }
+
+    /**
+     * Sends conditional request, so that server responds with 'Not Modified' status when file is matching validators.
+     */
+    override fun downloadModifiedFrom(dirUrl: String, fileName: String, target: File, validators: FileVersion): FileVersion? {
+        val sourceUrl = "$dirUrl/$fileName"
+        try {
+            return client.get(sourceUrl, { response ->
+                when (response.statusLine.statusCode) {
+                    HttpStatus.SC_NOT_MODIFIED -> null
+                    else -> {
+                        common.logger.info("Downloading: $sourceUrl -> $target")
+                        downloader { this.size = response.entity.contentLength }.download(asStream(response), target)
+                        FileVersion(
+                            size = target.length(),
+                            modified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED)?.value?.let { DateUtils.parseDate(it)?.time },
+                            etag = response.getFirstHeader(HttpHeaders.ETAG)?.value
+                        )
+                    }
+                }
+            }) {
+                validators.etag?.let { addHeader(HttpHeaders.IF_NONE_MATCH, it) }
+                validators.modified?.let { addHeader(HttpHeaders.IF_MODIFIED_SINCE, DateUtils.formatDate(Date(it))) }
             }
         } catch (e: Exception) {
             throw HttpFileException("Cannot download URL '$sourceUrl' to file '$target' using HTTP(s). Cause: ${e.message}", e)
         }
     }
 
+    /**
+     * Uploads file as multipart form to directory URL. File is streamed, so that memory usage is not depending on its size.
+     */
+    override fun uploadTo(dirUrl: String, fileName: String, source: File) {
+        try {
+            common.logger.info("Uploading: $source -> $dirUrl")
+            val uploader = uploader()
+            client.post(dirUrl, { checkStatus(it) }) {
+                entity = MultipartEntityBuilder.create()
+                    .addPart(uploadField.get(), FileUploadBody(source, fileName, client.multipartBinaryType.get(), uploader))
+                    .build()
+                if (uploadExpectContinue.get()) {
+                    addHeader(HttpHeaders.EXPECT, HTTP.EXPECT_CONTINUE)
+                }
+            }
+        } catch (e: Exception) {
+            throw HttpFileException("Cannot upload file '$source' to URL '$dirUrl' using HTTP(s). Cause: ${e.message}", e)
+        }
+    }
+
+    override fun version(dirUrl: String, fileName: String): FileVersion? {
+        val sourceUrl = "$dirUrl/$fileName"
+        try {
+            return headVersion(sourceUrl)
+        } catch (e: Exception) {
+            throw HttpFileException("Cannot check version of file at URL '$sourceUrl' using HTTP(s). Cause: ${e.message}", e)
+        }
+    }
+
+    private fun headVersion(sourceUrl: String): FileVersion? = client.head(sourceUrl) { version(it) }
+
+    /**
+     * Determine version of file from response headers (of 'HEAD' or 'GET' request).
+     * Size is known only if server is supporting byte ranges (and not compressing response).
+     * Validators are kept regardless, so that changed remote file could be detected anyway.
+     */
+    private fun version(response: HttpResponse): FileVersion? {
+        if (response.statusLine.statusCode != HttpStatus.SC_OK) {
+            return null
+        }
+
+        val ranged = response.getFirstHeader(HttpHeaders.ACCEPT_RANGES)?.value.equals("bytes", true) &&
+            response.getFirstHeader(HttpHeaders.CONTENT_ENCODING) == null
+        return FileVersion(
+            size = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH)?.value?.toLongOrNull()?.takeIf { ranged },
+            modified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED)?.value?.let { DateUtils.parseDate(it)?.time },
+            etag = response.getFirstHeader(HttpHeaders.ETAG)?.value
+        ).takeIf { it.size != null || it.modified != null || it.etag != null }
+    }
+
+    /**
+     * Downloads byte ranges of file in parallel. Each range request is conditional on version of file,
+     * so that file changed during download is not assembled from chunks of different versions.
+     */
+    private fun downloadRanges(sourceUrl: String, target: File, version: FileVersion, chunks: Int) {
+        val size = version.size ?: throw HttpFileException("Cannot download URL '$sourceUrl' in chunks as its size is unknown!")
+        common.logger.info("Downloading: $sourceUrl -> $target (using $chunks parallel chunks)")
+        downloader { this.size = size }.downloadRanges(FileDownloader.ranges(size, chunks), target) { range, download ->
+            client.get(sourceUrl, { response -> download(asRangeStream(response, range)) }) {
+                addHeader(HttpHeaders.RANGE, "bytes=${range.first}-${range.last}")
+                ifRange(version)?.let { addHeader(HttpHeaders.IF_RANGE, it) }
+            }
+        }
+    }
+
+    private fun asRangeStream(response: HttpResponse, range: LongRange) = when {
+        response.statusLine.statusCode != HttpStatus.SC_PARTIAL_CONTENT -> throw HttpFileException(
+            "Unexpected response status for byte range request: ${response.statusLine} (remote file may have changed)"
+        )
+        contentRange(response) != range -> throw HttpFileException(
+            "Unexpected byte range '${response.getFirstHeader(HttpHeaders.CONTENT_RANGE)?.value}' sent instead of $range"
+        )
+        else -> response.entity.content
+    }
+
     companion object {
         const val NAME = "http"
+
+        const val PARALLEL_CHUNK_MIN_SIZE = 16L * 1024 * 1024
+
+        private val CONTENT_RANGE = Regex("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)", RegexOption.IGNORE_CASE)
     }
 }
@@ -0,0 +1,26 @@
+package com.cognifide.gradle.common.file.transfer.sftp
+
+import org.apache.sshd.client.SshClient
+import org.apache.sshd.client.session.ClientSession
+import org.apache.sshd.sftp.client.SftpClient
+
+/**
+ * Authenticated SFTP channel together with SSH session and client owning it.
+ */
+class SftpConnection(val client: SshClient, val session: ClientSession, val sftp: SftpClient) : AutoCloseable {
+
+    @Volatile
+    var lastUsed: Long = System.currentTimeMillis()
+
+    val open: Boolean get() = client.isOpen && session.isOpen && sftp.isOpen
+
+    override fun close() {
+        sftp.use {
+            session.use {
+                client.use { it.stop() }
+            }
+        }
+    }
+
+    override fun toString() = "SftpConnection(session=$session)"
+}
@@ -0,0 +1,112 @@
+package com.cognifide.gradle.common.file.transfer.sftp
+
+import org.gradle.api.logging.Logging
+import java.util.*
+
+/**
+ * Keeps authenticated SFTP connections (per host, port, user and options) for reusing them within build.
+ * Idle connections are evicted after timeout and validated before being reused.
+ */
+class SftpConnectionPool(
+    private val idleTimeout: Long,
+    private val maxIdle: Int,
+    private val validateAfterInactivity: Long
+) : AutoCloseable {
+
+    private val logger = Logging.getLogger(SftpConnectionPool::class.java)
+
+    private val idle = mutableMapOf<String, Deque<SftpConnection>>()
+
+    private var closed = false
+
+    /**
+     * Perform action using pooled connection. Connection is returned to pool only when action succeeded,
+     * because after failure (e.g interrupted read) its state is unknown.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    fun <T> use(key: String, factory: () -> SftpConnection, action: (SftpConnection) -> T): T {
+        val connection = borrow(key) ?: factory()
+        val result = try {
+            action(connection)
+        } catch (e: Throwable) {
+            close(connection)
+            throw e
+        }
+        release(key, connection)
+        return result
+    }
+
+    @Synchronized
+    private fun borrow(key: String): SftpConnection? {
+        evictIdle()
+        val connections = idle[key] ?: return null
+        while (connections.isNotEmpty()) {
+            val connection = connections.pollLast()
+            if (validate(connection)) {
+                return connection
+            }
+            close(connection)
+        }
+        return null
+    }
+
+    @Synchronized
+    private fun release(key: String, connection: SftpConnection) {
+        if (closed) {
+            close(connection)
+            return
+        }
+        val connections = idle.getOrPut(key) { ArrayDeque() }
+        if (!connection.open || connections.size >= maxIdle) {
+            close(connection)
+            return
+        }
+        connection.lastUsed = System.currentTimeMillis()
+        connections.addLast(connection)
+    }
+
+    /**
+     * Check connection health by performing cheap request only when it was not used recently.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private fun validate(connection: SftpConnection): Boolean {
+        if (!connection.open) {
+            return false
+        }
+        if (System.currentTimeMillis() - connection.lastUsed < validateAfterInactivity) {
+            return true
+        }
+        return try {
+            connection.sftp.canonicalPath(".")
+            true
+        } catch (e: Exception) {
+            logger.debug("SFTP connection '$connection' is not valid anymore", e)
+            false
+        }
+    }
+
+    private fun evictIdle() {
+        val now = System.currentTimeMillis()
+        idle.values.forEach { connections ->
+            connections.removeIf { connection ->
+                (now - connection.lastUsed > idleTimeout).also { expired -> if (expired) close(connection) }
+            }
+        }
+    }
+
+    @Suppress("TooGenericExceptionCaught")
+    private fun close(connection: SftpConnection) {
+        try {
+            connection.close()
+        } catch (e: Exception) {
+            logger.debug("Cannot close SFTP connection '$connection'", e)
+        }
+    }
+
+    @Synchronized
+    override fun close() {
+        closed = true
+        idle.values.forEach { connections -> connections.forEach { close(it) } }
+        idle.clear()
+    }
+}
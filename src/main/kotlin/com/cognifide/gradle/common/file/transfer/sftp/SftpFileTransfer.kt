@@ -1,19 +1,25 @@
 package com.cognifide.gradle.common.file.transfer.sftp
 
 import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.file.transfer.FileDownloader
 import com.cognifide.gradle.common.file.transfer.FileEntry
+import com.cognifide.gradle.common.file.transfer.FileUtils
+import com.cognifide.gradle.common.file.transfer.FileVersion
 import com.cognifide.gradle.common.file.transfer.ProtocolFileTransfer
+import com.cognifide.gradle.common.file.transfer.ResumableFileTransfer
+import com.cognifide.gradle.common.utils.Formats
 import org.apache.http.client.utils.URIBuilder
 import org.apache.sshd.client.SshClient
 import org.apache.sshd.client.session.ClientSession
+import org.apache.sshd.core.CoreModuleProperties
 import org.apache.sshd.sftp.client.SftpClient
 import org.apache.sshd.sftp.client.SftpClientFactory
 import org.apache.sshd.sftp.common.SftpConstants
 import org.apache.sshd.sftp.common.SftpException
 import java.io.File
 
-@Suppress("TooGenericExceptionCaught")
-class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
+@Suppress("TooGenericExceptionCaught", "TooManyFunctions")
+class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common), ResumableFileTransfer {
 
     val user = common.obj.string {
         common.prop.string("fileTransfer.sftp.user")?.let { set(it) }
@@ -28,6 +34,46 @@ class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
         common.prop.long("fileTransfer.sftp.timeout")?.let { set(it) }
     }
 
+    /**
+     * Controls if authenticated connections are reused within build (instead of connecting for each operation).
+     */
+    val pooling = common.obj.boolean {
+        convention(true)
+        common.prop.boolean("fileTransfer.sftp.pooling")?.let { set(it) }
+    }
+
+    /**
+     * Time after which unused connection is closed.
+     */
+    val poolIdleTimeout = common.obj.long {
+        convention(60_000L)
+        common.prop.long("fileTransfer.sftp.poolIdleTimeout")?.let { set(it) }
+    }
+
+    /**
+     * Maximum number of unused connections kept per host, port and user.
+     */
+    val poolMaxIdle = common.obj.int {
+        convention(8)
+        common.prop.int("fileTransfer.sftp.poolMaxIdle")?.let { set(it) }
+    }
+
+    /**
+     * Size of each read / write request.
+     */
+    val bufferSize = common.obj.int {
+        convention(SftpClient.IO_BUFFER_SIZE)
+        common.prop.int("fileTransfer.sftp.bufferSize")?.let { set(it) }
+    }
+
+    /**
+     * Number of read / write requests kept in flight (improves throughput on high-latency links).
+     * Determines size of SFTP channel window. When not set, window of SSH client defaults is used.
+     */
+    val readAhead = common.obj.int {
+        common.prop.int("fileTransfer.sftp.readAhead")?.let { set(it) }
+    }
+
     private var clientOptions: SshClient.() -> Unit = {}
 
     fun client(options: SshClient.() -> Unit) {
@@ -44,42 +90,56 @@ class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
 
     override val protocols: List<String> get() = listOf("sftp://*")
 
-    override fun downloadFrom(dirUrl: String, fileName: String, target: File) {
-        val fileUrl = "$dirUrl/$fileName"
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File) = download(dirUrl, fileName, target) {}
 
-        connectDir(dirUrl) { dirPath ->
-            try {
-                common.logger.info("Downloading file from URL '$fileUrl'")
-                val filePath = "$dirPath/$fileName"
-                downloader { size = stat(filePath).size }.download(read(filePath), target)
-            } catch (e: Exception) {
-                throw SftpFileException("Cannot download file from URL '$fileUrl'. Cause: '${e.message}")
-            }
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long) = download(dirUrl, fileName, target) {
+        this.offset = offset
+        keepPartial = true
+    }
+
+    override fun version(dirUrl: String, fileName: String) = stat(dirUrl, fileName)?.run { FileVersion(size, modified) }
+
+    private fun download(dirUrl: String, fileName: String, target: File, options: FileDownloader.() -> Unit) {
+        connectDir(dirUrl) { dirPath -> downloadFile(dirUrl, dirPath, fileName, target, options) }
+    }
+
+    private fun SftpClient.downloadFile(dirUrl: String, dirPath: String, fileName: String, target: File, options: FileDownloader.() -> Unit) {
+        val fileUrl = "$dirUrl/$fileName"
+        try {
+            common.logger.info("Downloading file from URL '$fileUrl'")
+            val filePath = "$dirPath/$fileName"
+            val downloader = downloader { size = stat(filePath).size }.apply(options)
+            downloader.download(FileUtils.skip(read(filePath, bufferSize.get()), downloader.offset), target)
+        } catch (e: Exception) {
+            throw SftpFileException("Cannot download file from URL '$fileUrl'. Cause: '${e.message}")
         }
     }
 
     override fun uploadTo(dirUrl: String, fileName: String, source: File) {
-        val fileUrl = "$dirUrl/$fileName"
+        connectDir(dirUrl) { dirPath -> uploadFile(dirUrl, dirPath, fileName, source) }
+    }
 
-        connectDir(dirUrl) { dirPath ->
-            try {
-                common.logger.info("Uploading file to URL '$fileUrl'")
-                val filePath = "$dirPath/$fileName"
-                uploader().upload(source, write(filePath))
-            } catch (e: Exception) {
-                throw SftpFileException("Cannot upload file '$source' to URL '$fileUrl'. Cause: '${e.message}", e)
-            }
+    private fun SftpClient.uploadFile(dirUrl: String, dirPath: String, fileName: String, source: File) {
+        val fileUrl = "$dirUrl/$fileName"
+        try {
+            common.logger.info("Uploading file to URL '$fileUrl'")
+            val filePath = "$dirPath/$fileName"
+            uploader().upload(source, write(filePath, bufferSize.get()))
+        } catch (e: Exception) {
+            throw SftpFileException("Cannot upload file '$source' to URL '$fileUrl'. Cause: '${e.message}", e)
         }
     }
 
     override fun deleteFrom(dirUrl: String, fileName: String) {
-        connectDir(dirUrl) { dirPath ->
-            try {
-                val filePath = "$dirPath/$fileName"
-                remove(filePath)
-            } catch (e: Exception) {
-                throw SftpFileException("Cannot delete file at URL '$dirUrl/$fileName'. Cause: '${e.message}", e)
-            }
+        connectDir(dirUrl) { dirPath -> deleteFile(dirUrl, dirPath, fileName) }
+    }
+
+    private fun SftpClient.deleteFile(dirUrl: String, dirPath: String, fileName: String) {
+        try {
+            val filePath = "$dirPath/$fileName"
+            remove(filePath)
+        } catch (e: Exception) {
+            throw SftpFileException("Cannot delete file at URL '$dirUrl/$fileName'. Cause: '${e.message}", e)
         }
     }
 
@@ -106,24 +166,24 @@ class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
     }
 
     override fun stat(dirUrl: String, fileName: String): FileEntry? {
-        val fileUrl = "$dirUrl/$fileName"
+        return connectDir(dirUrl) { dirPath -> statFile(dirUrl, dirPath, fileName) }
+    }
 
-        return connectDir(dirUrl) { dirPath ->
-            try {
-                common.logger.info("Checking file status at URL '$fileUrl'")
-                stat("$dirPath/$fileName").takeIf { it.isRegularFile }?.run {
-                    FileEntry(fileName, size, modifyTime.toMillis())
-                }
-            } catch (e: Exception) {
-                when {
-                    e is SftpException && STATUS_NOT_EXISTS.contains(e.status) -> null
-                    else -> throw SftpFileException("Cannot check file status at URL '$fileUrl'. Cause: '${e.message}", e)
-                }
+    private fun SftpClient.statFile(dirUrl: String, dirPath: String, fileName: String): FileEntry? {
+        val fileUrl = "$dirUrl/$fileName"
+        return try {
+            common.logger.info("Checking file status at URL '$fileUrl'")
+            stat("$dirPath/$fileName").takeIf { it.isRegularFile }?.run {
+                FileEntry(fileName, size, modifyTime.toMillis())
+            }
+        } catch (e: Exception) {
+            when {
+                e is SftpException && STATUS_NOT_EXISTS.contains(e.status) -> null
+                else -> throw SftpFileException("Cannot check file status at URL '$fileUrl'. Cause: '${e.message}", e)
             }
         }
     }
 
-    @Suppress("ComplexMethod", "NestedBlockDepth")
     fun <T> connect(url: String, callback: SftpClient.(String) -> T): T {
         val urlConfig = URIBuilder(url)
         val userInfo = urlConfig.userInfo?.split(":") ?: listOf()
@@ -133,20 +193,14 @@ class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
         val host = urlConfig.host
 
         try {
-            SshClient.setUpDefaultClient().use { client ->
-                client.apply(clientOptions)
-                client.start()
-                client.connect(user, host, port).apply { await(timeout.get()) }.session.use { session ->
-                    session.apply(sessionOptions)
-                    if (!password.isNullOrBlank()) {
-                        session.addPasswordIdentity(password)
-                    }
-                    session.auth().await(timeout.get())
-
-                    SftpClientFactory.instance().createSftpClient(session).use { sftp ->
-                        return callback(sftp, urlConfig.path).also { client.stop() }
-                    }
-                }
+            return if (pooling.get()) {
+                val key = listOf(
+                    user, host, port, password?.let { Formats.toMd5(it) }, timeout.get(), readAhead.orNull, bufferSize.get(),
+                    System.identityHashCode(clientOptions), System.identityHashCode(sessionOptions)
+                ).joinToString("|")
+                connectionPool.use(key, { open(user, host, port, password) }) { callback(it.sftp, urlConfig.path) }
+            } else {
+                open(user, host, port, password).use { callback(it.sftp, urlConfig.path) }
             }
         } catch (e: Exception) {
             throw SftpFileException(
@@ -157,7 +211,66 @@ class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
         }
     }
 
+    private fun open(user: String?, host: String, port: Int, password: String?): SftpConnection {
+        val client = SshClient.setUpDefaultClient().apply {
+            apply(clientOptions)
+            start()
+        }
+        try {
+            val session = client.connect(user, host, port).apply { await(timeout.get()) }.session
+            session.apply(sessionOptions)
+            if (!password.isNullOrBlank()) {
+                session.addPasswordIdentity(password)
+            }
+            session.auth().await(timeout.get())
+            readAhead.orNull?.let { CoreModuleProperties.WINDOW_SIZE.set(session, it.toLong() * bufferSize.get()) }
+
+            return SftpConnection(client, session, SftpClientFactory.instance().createSftpClient(session))
+        } catch (e: Exception) {
+            client.use { it.stop() }
+            throw e
+        }
+    }
+
+    /**
+     * Connections shared by all SFTP transfers within build and closed automatically when build is finished.
+     */
+    private val connectionPool: SftpConnectionPool
+        get() = common.buildScope.computeCloseable(SftpConnectionPool::class.java.canonicalName) {
+            SftpConnectionPool(poolIdleTimeout.get(), poolMaxIdle.get(), POOL_VALIDATE_AFTER_INACTIVITY)
+        }
+
+    /**
+     * Performs all operations using single connection and checks directory only once.
+     * Connection is not reused when any operation fails, but original failure is rethrown.
+     */
+    override fun <T> batch(dirUrl: String, action: () -> T): T {
+        try {
+            return connectDir(dirUrl) { dirPath ->
+                val previous = batchDir.get()
+                batchDir.set(SftpBatchDir(dirUrl, this, dirPath))
+                try {
+                    action()
+                } catch (e: Exception) {
+                    throw SftpBatchException(e)
+                } finally {
+                    batchDir.set(previous)
+                }
+            }
+        } catch (e: SftpFileException) {
+            throw (e.cause as? SftpBatchException)?.cause ?: e
+        }
+    }
+
+    private class SftpBatchDir(val dirUrl: String, val client: SftpClient, val dirPath: String)
+
+    private class SftpBatchException(cause: Exception) : Exception(cause)
+
+    private val batchDir = ThreadLocal<SftpBatchDir?>()
+
     fun <T> connectDir(dirUrl: String, callback: SftpClient.(String) -> T): T {
+        batchDir.get()?.takeIf { it.dirUrl == dirUrl }?.let { batch -> return batch.client.callback(batch.dirPath) }
+
         return connect(dirUrl) { dirPath ->
             try {
                 if (!lstat(dirPath).isDirectory) {
@@ -182,6 +295,8 @@ class SftpFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
 
         const val PORT_DEFAULT = 22
 
+        const val POOL_VALIDATE_AFTER_INACTIVITY = 2_000L
+
         val STATUS_NOT_EXISTS = arrayOf(
             SftpConstants.SSH_FX_NO_SUCH_FILE,
             SftpConstants.SSH_FX_NO_SUCH_PATH
@@ -1,15 +1,19 @@
 package com.cognifide.gradle.common.file.transfer.smb
 
 import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.file.transfer.FileDownloader
 import com.cognifide.gradle.common.file.transfer.FileEntry
+import com.cognifide.gradle.common.file.transfer.FileUtils
+import com.cognifide.gradle.common.file.transfer.FileVersion
 import com.cognifide.gradle.common.file.transfer.ProtocolFileTransfer
+import com.cognifide.gradle.common.file.transfer.ResumableFileTransfer
 import jcifs.smb.NtlmPasswordAuthentication
 import jcifs.smb.SmbFile
 import org.apache.commons.lang3.StringUtils
 import java.io.File
 
-@Suppress("TooGenericExceptionCaught")
-class SmbFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
+@Suppress("TooGenericExceptionCaught", "TooManyFunctions")
+class SmbFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common), ResumableFileTransfer {
 
     private val logger = common.logger
 
@@ -29,12 +33,22 @@ class SmbFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
 
     override val protocols: List<String> get() = listOf("smb://*")
 
-    override fun downloadFrom(dirUrl: String, fileName: String, target: File) {
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File) = download(dirUrl, fileName, target) {}
+
+    override fun downloadFrom(dirUrl: String, fileName: String, target: File, offset: Long) = download(dirUrl, fileName, target) {
+        this.offset = offset
+        keepPartial = true
+    }
+
+    override fun version(dirUrl: String, fileName: String) = stat(dirUrl, fileName)?.run { FileVersion(size, modified) }
+
+    private fun download(dirUrl: String, fileName: String, target: File, options: FileDownloader.() -> Unit) {
         val fileUrl = "$dirUrl/$fileName"
         try {
             file(dirUrl, fileName).apply {
                 logger.info("Downloading file from URL '$fileUrl'")
-                downloader { size = length() }.download(inputStream, target)
+                val downloader = downloader { size = length() }.apply(options)
+                downloader.download(FileUtils.skip(inputStream, downloader.offset), target)
             }
         } catch (e: Exception) {
             throw SmbFileException("Cannot download file from URL '$fileUrl' . Cause: '${e.message}")
@@ -99,7 +113,34 @@ class SmbFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
         }
     }
 
+    /**
+     * Checks status of many files using single directory listing.
+     */
+    override fun statAll(dirUrl: String, fileNames: Iterable<String>): Map<String, FileEntry?> {
+        val entries = list(dirUrl).associateBy { it.name }
+        return fileNames.associateWith { entries[it] }
+    }
+
+    /**
+     * Checks directory only once, then files are resolved relatively to it (without additional requests).
+     */
+    override fun <T> batch(dirUrl: String, action: () -> T): T {
+        val previous = batchDir.get()
+        batchDir.set(dirUrl to dir(dirUrl))
+        try {
+            return action()
+        } finally {
+            batchDir.set(previous)
+        }
+    }
+
+    private val batchDir = ThreadLocal<Pair<String, SmbFile>?>()
+
+    private fun batchDir(dirUrl: String) = batchDir.get()?.takeIf { it.first == dirUrl }?.second
+
     fun file(dirUrl: String, fileName: String): SmbFile {
+        batchDir(dirUrl)?.let { dir -> return SmbFile(dir, fileName).apply { useCaches = false } }
+
         val dirUrlNormalized = StringUtils.appendIfMissing(dirUrl, "/")
 
         return if (!user.orNull.isNullOrBlank() && !password.orNull.isNullOrBlank()) {
@@ -109,7 +150,7 @@ class SmbFileTransfer(common: CommonExtension) : ProtocolFileTransfer(common) {
         }.apply { useCaches = false }
     }
 
-    fun dir(dirUrl: String): SmbFile = file(dirUrl, "").apply {
+    fun dir(dirUrl: String): SmbFile = batchDir(dirUrl) ?: file(dirUrl, "").apply {
         try {
             if (!isDirectory) {
                 throw SmbFileException("Path at URL '$dirUrl' is not a directory.")
@@ -0,0 +1,150 @@
+package com.cognifide.gradle.common.http
+
+import org.apache.http.HttpEntity
+import org.apache.http.HttpEntityEnclosingRequest
+import org.apache.http.HttpHeaders
+import org.apache.http.HttpHost
+import org.apache.http.HttpResponse
+import org.apache.http.ProtocolVersion
+import org.apache.http.client.methods.HttpRequestBase
+import org.apache.http.entity.InputStreamEntity
+import org.apache.http.impl.EnglishReasonPhraseCatalog
+import org.apache.http.message.BasicHttpResponse
+import org.apache.http.message.BasicStatusLine
+import org.apache.http.protocol.HTTP
+import java.io.FilterInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.PipedInputStream
+import java.io.PipedOutputStream
+import java.net.InetSocketAddress
+import java.net.ProxySelector
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse.BodyHandlers
+import java.time.Duration
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import javax.net.ssl.SSLContext
+import kotlin.concurrent.thread
+import java.net.http.HttpClient as JdkHttpClient
+import java.net.http.HttpResponse as JdkHttpResponse
+
+/**
+ * Sends Apache HttpClient requests using JDK HTTP client supporting HTTP/2,
+ * so that concurrent requests to same origin are multiplexed over single connection.
+ *
+ * Responses are adapted to Apache ones, so that same response handlers could be used.
+ * Response content is streamed and needs to be closed after being handled.
+ */
+class Http2Transport(connectionTimeout: Int, sslContext: SSLContext?, proxy: HttpHost?) {
+
+    private val client = JdkHttpClient.newBuilder().apply {
+        version(JdkHttpClient.Version.HTTP_2)
+        followRedirects(JdkHttpClient.Redirect.NORMAL)
+        connectTimeout(Duration.ofMillis(connectionTimeout.toLong()))
+        sslContext?.let { sslContext(it) }
+        proxy?.let { proxy(ProxySelector.of(InetSocketAddress(it.hostName, it.port))) }
+    }.build()
+
+    fun execute(method: HttpRequestBase): HttpResponse = toResponse(client.send(toRequest(method), BodyHandlers.ofInputStream()))
+
+    fun executeAsync(method: HttpRequestBase): CompletableFuture<HttpResponse> = client
+        .sendAsync(toRequest(method), BodyHandlers.ofInputStream())
+        .thenApply { toResponse(it) }
+
+    private fun toRequest(method: HttpRequestBase): HttpRequest = HttpRequest.newBuilder(method.uri).apply {
+        method.allHeaders.filter { it.name.lowercase(Locale.ENGLISH) !in HEADERS_RESTRICTED }.forEach { header(it.name, it.value) }
+        method.config?.socketTimeout?.takeIf { it > 0 }?.let { timeout(Duration.ofMillis(it.toLong())) }
+
+        val entity = (method as? HttpEntityEnclosingRequest)?.entity
+        if (entity == null) {
+            method(method.method, HttpRequest.BodyPublishers.noBody())
+        } else {
+            entity.contentType?.let { setHeader(it.name, it.value) }
+            entity.contentEncoding?.let { setHeader(it.name, it.value) }
+            if (method.getFirstHeader(HttpHeaders.EXPECT)?.value.equals(HTTP.EXPECT_CONTINUE, true)) {
+                expectContinue(true)
+            }
+            val body = HttpRequest.BodyPublishers.ofInputStream { content(entity) }
+            method(method.method, if (entity.contentLength >= 0) HttpRequest.BodyPublishers.fromPublisher(body, entity.contentLength) else body)
+        }
+    }.build()
+
+    /**
+     * Read repeatable entity directly. Otherwise, stream entity written by separate thread,
+     * as some entities (e.g multipart or compressed) could be only written.
+     */
+    private fun content(entity: HttpEntity): InputStream {
+        if (entity.isRepeatable) {
+            try {
+                return entity.content
+            } catch (e: UnsupportedOperationException) {
+                // entity could be only written
+            }
+        }
+        return PipedContent(entity)
+    }
+
+    /**
+     * Entity content written by separate thread. Failure of writing is rethrown when reading,
+     * so that truncated content is never sent as complete one.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private class PipedContent(entity: HttpEntity) : FilterInputStream(PipedInputStream(PIPE_SIZE)) {
+
+        @Volatile
+        private var error: Throwable? = null
+
+        init {
+            val output = PipedOutputStream(`in` as PipedInputStream)
+            thread(isDaemon = true, name = "http2-request-body") {
+                output.use {
+                    try {
+                        entity.writeTo(it)
+                    } catch (e: Throwable) {
+                        error = e
+                    }
+                }
+            }
+        }
+
+        override fun read(): Int = super.read().also { if (it < 0) check() }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int = super.read(b, off, len).also { if (it < 0) check() }
+
+        override fun close() {
+            super.close()
+            check()
+        }
+
+        private fun check() {
+            error?.let { throw IOException("Cannot write request content. Cause: ${it.message}", it) }
+        }
+    }
+
+    private fun toResponse(response: JdkHttpResponse<InputStream>): HttpResponse {
+        val version = when (response.version()) {
+            JdkHttpClient.Version.HTTP_2 -> ProtocolVersion("HTTP", 2, 0)
+            else -> ProtocolVersion("HTTP", 1, 1)
+        }
+        val status = response.statusCode()
+        return BasicHttpResponse(BasicStatusLine(version, status, EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH))).apply {
+            response.headers().map().filterKeys { !it.startsWith(":") }.forEach { (name, values) -> values.forEach { addHeader(name, it) } }
+            val length = response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1L)
+            entity = InputStreamEntity(response.body(), length).apply {
+                response.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent { setContentType(it) }
+                response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).ifPresent { setContentEncoding(it) }
+            }
+        }
+    }
+
+    companion object {
+
+        private const val PIPE_SIZE = 64 * 1024
+
+        /**
+         * Headers set by JDK client itself and not allowed to be set explicitly.
+         */
+        private val HEADERS_RESTRICTED = setOf("connection", "content-length", "expect", "host", "upgrade")
+    }
+}
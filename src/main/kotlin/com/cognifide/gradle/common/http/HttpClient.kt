@@ -9,16 +9,27 @@ import com.cognifide.gradle.common.utils.asMap
 import com.fasterxml.jackson.databind.JsonNode
 import org.apache.commons.io.IOUtils
 import org.apache.http.HttpEntity
+import org.apache.http.HttpEntityEnclosingRequest
 import org.apache.http.HttpHeaders
 import org.apache.http.HttpHost
 import org.apache.http.HttpResponse
 import org.apache.http.NameValuePair
 import org.apache.http.auth.AuthScope
 import org.apache.http.auth.UsernamePasswordCredentials
+import org.apache.http.client.CredentialsProvider
 import org.apache.http.client.config.CookieSpecs
 import org.apache.http.client.config.RequestConfig
+import org.apache.http.client.entity.DeflateInputStream
+import org.apache.http.client.entity.GzipCompressingEntity
+import org.apache.http.client.entity.InputStreamFactory
 import org.apache.http.client.entity.UrlEncodedFormEntity
 import org.apache.http.client.methods.*
+import org.apache.http.client.protocol.HttpClientContext
+import org.apache.http.client.utils.URIUtils
+import org.apache.http.concurrent.FutureCallback
+import org.apache.http.config.RegistryBuilder
+import org.apache.http.conn.socket.ConnectionSocketFactory
+import org.apache.http.conn.socket.PlainConnectionSocketFactory
 import org.apache.http.conn.ssl.NoopHostnameVerifier
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory
 import org.apache.http.entity.ContentType
@@ -26,21 +37,38 @@ import org.apache.http.entity.FileEntity
 import org.apache.http.entity.InputStreamEntity
 import org.apache.http.entity.StringEntity
 import org.apache.http.entity.mime.MultipartEntityBuilder
+import org.apache.http.impl.auth.BasicScheme
+import org.apache.http.impl.client.BasicAuthCache
 import org.apache.http.impl.client.BasicCredentialsProvider
 import org.apache.http.impl.client.CloseableHttpClient
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy
 import org.apache.http.impl.client.HttpClientBuilder
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder
 import org.apache.http.message.BasicHeader
 import org.apache.http.message.BasicNameValuePair
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy
 import org.apache.http.ssl.SSLContextBuilder
+import org.apache.http.util.EntityUtils
+import org.gradle.api.JavaVersion
 import org.jsoup.Jsoup
 import org.jsoup.nodes.Document
 import java.io.File
 import java.io.IOException
 import java.io.InputStream
+import java.io.InterruptedIOException
+import java.net.ConnectException
+import java.net.UnknownHostException
 import java.nio.charset.StandardCharsets
 import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.zip.GZIPInputStream
+import javax.net.ssl.SSLContext
+import javax.net.ssl.SSLException
 
-@Suppress("TooManyFunctions")
+@Suppress("TooManyFunctions", "LargeClass")
 open class HttpClient(private val common: CommonExtension) {
 
     private val logger = common.logger
@@ -60,6 +88,57 @@ open class HttpClient(private val common: CommonExtension) {
         common.prop.boolean("httpClient.connectionRetries")?.let { set(it) }
     }
 
+    /**
+     * Reuse connections (keep-alive) between requests by sharing connection pool within whole build.
+     */
+    val connectionPooling = common.obj.boolean {
+        convention(false)
+        common.prop.boolean("httpClient.connectionPooling")?.let { set(it) }
+    }
+
+    val connectionPoolMaxTotal = common.obj.int {
+        convention(100)
+        common.prop.int("httpClient.connectionPoolMaxTotal")?.let { set(it) }
+    }
+
+    val connectionPoolMaxPerRoute = common.obj.int {
+        convention(20)
+        common.prop.int("httpClient.connectionPoolMaxPerRoute")?.let { set(it) }
+    }
+
+    /**
+     * Time in milliseconds for which idle pooled connection is kept alive (unless server says otherwise).
+     */
+    val connectionKeepAlive = common.obj.long {
+        convention(30_000L)
+        common.prop.long("httpClient.connectionKeepAlive")?.let { set(it) }
+    }
+
+    /**
+     * Ask server to compress responses (gzip, deflate and brotli when its decoder is available on classpath).
+     * Responses are decompressed while being read, also by asynchronous requests.
+     */
+    val responseCompression = common.obj.boolean {
+        convention(true)
+        common.prop.boolean("httpClient.responseCompression")?.let { set(it) }
+    }
+
+    /**
+     * Compress file entities sent by 'put', 'patch' and 'post' using gzip (server needs to accept such requests).
+     */
+    val requestCompression = common.obj.boolean {
+        convention(false)
+        common.prop.boolean("httpClient.requestCompression")?.let { set(it) }
+    }
+
+    /**
+     * Implementation used for sending requests. HTTP/2 allows to multiplex concurrent requests to same origin.
+     */
+    val transport = common.obj.typed<HttpTransport> {
+        convention(HttpTransport.HTTP1)
+        common.prop.string("httpClient.transport")?.let { set(HttpTransport.of(it)) }
+    }
+
     val authorizationPreemptive = common.obj.boolean {
         convention(false)
         common.prop.boolean("httpClient.authorizationPreemptive")?.let { set(it) }
@@ -125,6 +204,10 @@ open class HttpClient(private val common: CommonExtension) {
 
     private var requestConfigurer: HttpRequestBase.() -> Unit = {}
 
+    /**
+     * Customize client used by synchronous requests.
+     * Asynchronous requests are using different client type, see [asyncClientBuilder].
+     */
     fun clientBuilder(builder: HttpClientBuilder.() -> Unit) {
         this.clientBuilder = builder
     }
@@ -139,57 +222,102 @@ open class HttpClient(private val common: CommonExtension) {
     }
 
     fun customDefaults(builder: HttpClientBuilder) = builder.apply {
-        if (!basicUser.orNull.isNullOrBlank() && !basicPassword.orNull.isNullOrBlank()) {
+        basicCredentialsProvider()?.let { credentials ->
             if (authorizationPreemptive.get()) {
                 addInterceptorFirst(PreemptiveAuthInterceptor())
             }
-
-            setDefaultCredentialsProvider(
-                BasicCredentialsProvider().apply {
-                    setCredentials(AuthScope.ANY, UsernamePasswordCredentials(basicUser.get(), basicPassword.get()))
-                }
-            )
+            setDefaultCredentialsProvider(credentials)
         }
 
         if (!bearerToken.orNull.isNullOrBlank()) {
-            val headers = listOf(
-                BasicHeader(HttpHeaders.AUTHORIZATION, "Bearer ${bearerToken.get()}")
-            )
-            setDefaultHeaders(headers)
+            setDefaultHeaders(listOf(bearerHeader()))
         }
 
-        setDefaultRequestConfig(
-            RequestConfig.custom().apply {
-                setCookieSpec(CookieSpecs.STANDARD)
+        setDefaultRequestConfig(defaultRequestConfig())
 
-                if (!connectionRetries.get()) {
-                    setSocketTimeout(connectionTimeout.get())
-                }
-                setConnectTimeout(connectionTimeout.get())
-                setConnectionRequestTimeout(connectionTimeout.get())
-            }.build()
-        )
-
-        if (!proxyHost.orNull.isNullOrBlank() && proxyPort.isPresent) {
-            setProxy(HttpHost(proxyHost.get(), proxyPort.get(), proxyScheme.get()))
-        }
+        proxy()?.let { setProxy(it) }
 
         if (connectionIgnoreSsl.get()) {
-            setSSLSocketFactory(
-                SSLConnectionSocketFactory(
-                    SSLContextBuilder()
-                        .loadTrustMaterial(null) { _, _ -> true }
-                        .build(),
-                    NoopHostnameVerifier.INSTANCE
-                )
-            )
+            setSSLSocketFactory(SSL_SOCKET_FACTORY_IGNORING)
         }
 
         if (!connectionRetries.get()) {
             disableAutomaticRetries()
         }
+
+        if (connectionPooling.get()) {
+            poolingDefaults(this)
+        }
+
+        if (!responseCompression.get()) {
+            disableContentCompression()
+        } else if (BROTLI_STREAM != null) {
+            setContentDecoderRegistry(CONTENT_DECODERS.mapValues { (_, decoder) -> InputStreamFactory { decoder(it) } })
+        }
+    }
+
+    private fun basicCredentialsProvider(): CredentialsProvider? = when {
+        !basicUser.orNull.isNullOrBlank() && !basicPassword.orNull.isNullOrBlank() -> BasicCredentialsProvider().apply {
+            setCredentials(AuthScope.ANY, UsernamePasswordCredentials(basicUser.get(), basicPassword.get()))
+        }
+        else -> null
     }
 
+    private fun bearerHeader() = BasicHeader(HttpHeaders.AUTHORIZATION, "Bearer ${bearerToken.get()}")
+
+    private fun defaultRequestConfig(): RequestConfig = RequestConfig.custom().apply {
+        setCookieSpec(CookieSpecs.STANDARD)
+
+        if (!connectionRetries.get()) {
+            setSocketTimeout(connectionTimeout.get())
+        }
+        setConnectTimeout(connectionTimeout.get())
+        setConnectionRequestTimeout(connectionTimeout.get())
+    }.build()
+
+    private fun proxy(): HttpHost? = when {
+        !proxyHost.orNull.isNullOrBlank() && proxyPort.isPresent -> HttpHost(proxyHost.get(), proxyPort.get(), proxyScheme.get())
+        else -> null
+    }
+
+    fun poolingDefaults(builder: HttpClientBuilder) = builder.apply {
+        setConnectionManager(connectionManager)
+        setConnectionManagerShared(true)
+        setKeepAliveStrategy { response, context ->
+            val keepAlive = connectionKeepAlive.get()
+            val keepAliveServer = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context)
+            if (keepAliveServer > 0) keepAliveServer.coerceAtMost(keepAlive) else keepAlive
+        }
+    }
+
+    private val connectionFingerprint: String
+        get() = listOf(connectionIgnoreSsl.get(), connectionPoolMaxTotal.get(), connectionPoolMaxPerRoute.get()).joinToString("|")
+
+    /**
+     * Connection pool shared by all clients having same connection settings.
+     * Closed automatically when build is finished.
+     */
+    private val connectionManager: PoolingHttpClientConnectionManager
+        get() {
+            return common.buildScope.computeCloseable("${PoolingHttpClientConnectionManager::class.java.canonicalName}_$connectionFingerprint") {
+                val socketFactories = RegistryBuilder.create<ConnectionSocketFactory>()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register(
+                        "https",
+                        when {
+                            connectionIgnoreSsl.get() -> SSL_SOCKET_FACTORY_IGNORING
+                            else -> SSLConnectionSocketFactory.getSystemSocketFactory()
+                        }
+                    )
+                    .build()
+                PoolingHttpClientConnectionManager(socketFactories).apply {
+                    maxTotal = connectionPoolMaxTotal.get()
+                    defaultMaxPerRoute = connectionPoolMaxPerRoute.get()
+                    validateAfterInactivity = CONNECTION_VALIDATE_AFTER_INACTIVITY
+                }
+            }
+        }
+
     private val client get() = HttpClientBuilder.create().apply(clientBuilder).build()
 
     fun <T> client(action: CloseableHttpClient.() -> T) = client.use(action)
@@ -263,7 +391,7 @@ open class HttpClient(private val common: CommonExtension) {
     fun <T> put(uri: String, entity: File, handler: HttpClient.(HttpResponse) -> T) = put(uri, entity, handler) {}
 
     fun <T> put(uri: String, entity: File, handler: HttpClient.(HttpResponse) -> T, options: HttpPut.() -> Unit): T {
-        return put(uri, handler) { this.entity = createEntity(entity); options() }
+        return put(uri, handler) { this.entity = createRequestEntity(entity); options() }
     }
 
     fun patch(path: String) = patch(path) { checkStatus(it) }
@@ -284,7 +412,7 @@ open class HttpClient(private val common: CommonExtension) {
         handler: HttpClient.(HttpResponse) -> T,
         options: HttpPatch.() -> Unit
     ): T {
-        return patch(uri, handler) { this.entity = createEntity(entity); options() }
+        return patch(uri, handler) { this.entity = createRequestEntity(entity); options() }
     }
 
     fun post(url: String, params: Map<String, Any?> = mapOf()) = postUrlencoded(url, params)
@@ -322,7 +450,7 @@ open class HttpClient(private val common: CommonExtension) {
 
     fun <T> post(uri: String, entity: File, handler: HttpClient.(HttpResponse) -> T, options: HttpPost.() -> Unit) =
         post(uri, handler) {
-            this.entity = createEntity(entity); options()
+            this.entity = createRequestEntity(entity); options()
         }
 
     fun <T> post(uri: String, handler: HttpClient.(HttpResponse) -> T, options: HttpPost.() -> Unit): T {
@@ -334,7 +462,24 @@ open class HttpClient(private val common: CommonExtension) {
             responseChecker(response)
         }
 
-        return response.entity.content
+        return decompress(response, response.entity.content)
+    }
+
+    /**
+     * Decompress response content when not done by client already (e.g for asynchronous requests).
+     * Content in unknown encoding is passed through unchanged (like synchronous client does).
+     */
+    private fun decompress(response: HttpResponse, input: InputStream): InputStream {
+        val encoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING)?.value?.trim()?.lowercase(Locale.ENGLISH)
+        if (encoding.isNullOrBlank() || encoding == CONTENT_ENCODING_IDENTITY) {
+            return input
+        }
+        val decoder = CONTENT_DECODERS[encoding]
+        if (decoder == null) {
+            logger.debug("Unsupported response content encoding '$encoding'. Passing content through unchanged.")
+            return input
+        }
+        return decoder(input)
     }
 
     fun asJson(response: HttpResponse): JsonNode = Formats.asJson(asStream(response))
@@ -366,12 +511,15 @@ open class HttpClient(private val common: CommonExtension) {
 
     fun asMapFromJson(response: HttpResponse, jsonPointer: String) = asNodeFromJson(response, jsonPointer).asMap()
 
+    /**
+     * Read only JSON node at pointer (response is streamed, whole JSON tree is not loaded into memory).
+     */
     @Suppress("TooGenericExceptionCaught")
     fun asNodeFromJson(response: HttpResponse, jsonPointer: String): JsonNode {
-        val json = asJson(response)
+        val input = asStream(response)
 
         return try {
-            json.at(jsonPointer).also {
+            Formats.asJson(input, jsonPointer).also {
                 if (it.isMissingNode) {
                     throw ResponseException("Cannot parse response JSON as map, because node at pointer '$jsonPointer' is missing!\n$response")
                 }
@@ -434,23 +582,297 @@ open class HttpClient(private val common: CommonExtension) {
     }
 
     @Suppress("TooGenericExceptionCaught")
-    open fun <T> execute(method: HttpRequestBase, handler: HttpClient.(HttpResponse) -> T) = client {
+    open fun <T> execute(method: HttpRequestBase, handler: HttpClient.(HttpResponse) -> T): T {
+        if (transport.get() == HttpTransport.HTTP2) {
+            return executeHttp2(method, handler)
+        }
+        return client {
+            requestConfigurer(method)
+            val response = try {
+                execute(method)
+            } catch (e: Exception) {
+                throw RequestException("Failed request to $method! Cause: ${e.message}", e)
+            }
+            response.use {
+                try {
+                    responseHandler(response)
+                    this@HttpClient.handler(response).also {
+                        if (connectionPooling.get()) {
+                            EntityUtils.consumeQuietly(response.entity) // allows connection to be reused
+                        }
+                    }
+                } catch (e: Exception) {
+                    throw ResponseException("Failed response handling of $method! Cause: ${e.message}", e)
+                }
+            }
+        }
+    }
+
+    @Suppress("TooGenericExceptionCaught")
+    private fun <T> executeHttp2(method: HttpRequestBase, handler: HttpClient.(HttpResponse) -> T): T {
         requestConfigurer(method)
+        http2Headers(method)
         val response = try {
-            execute(method)
+            http2Transport.execute(method)
         } catch (e: Exception) {
             throw RequestException("Failed request to $method! Cause: ${e.message}", e)
         }
+        return response.entity.content.use { handleResponse(method, response, handler) }
+    }
+
+    /**
+     * Handle response the same way regardless of transport used, so that handling failure is reported consistently.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private fun <T> handleResponse(method: HttpRequestBase, response: HttpResponse, handler: HttpClient.(HttpResponse) -> T): T {
         try {
             responseHandler(response)
-            this@HttpClient.handler(response)
+            return handler(response)
         } catch (e: Exception) {
             throw ResponseException("Failed response handling of $method! Cause: ${e.message}", e)
         }
     }
 
+    /**
+     * Transport shared by all clients having same connection settings.
+     * Connections are multiplexed, so that concurrent requests to same origin are using single one.
+     */
+    private val http2Transport: Http2Transport
+        get() {
+            if (!JavaVersion.current().isJava11Compatible) {
+                throw RequestException("HTTP/2 transport requires Java 11 or newer but current is '${JavaVersion.current()}'!")
+            }
+            val fingerprint = listOf(connectionIgnoreSsl.get(), connectionTimeout.get(), proxy()).joinToString("|")
+            return common.buildScope.computeOnce("${Http2Transport::class.java.canonicalName}_$fingerprint") {
+                Http2Transport(connectionTimeout.get(), SSL_CONTEXT_IGNORING.takeIf { connectionIgnoreSsl.get() }, proxy())
+            }
+        }
+
+    /**
+     * Headers handled by Apache client itself (authorization and compression) need to be set explicitly.
+     * Credentials are always sent preemptively.
+     */
+    private fun http2Headers(method: HttpRequestBase) {
+        if (!method.containsHeader(HttpHeaders.AUTHORIZATION)) {
+            when {
+                !bearerToken.orNull.isNullOrBlank() -> method.addHeader(bearerHeader())
+                basicCredentials != null -> method.addHeader(
+                    HttpHeaders.AUTHORIZATION,
+                    "Basic ${Base64.getEncoder().encodeToString("${basicUser.get()}:${basicPassword.get()}".toByteArray())}"
+                )
+            }
+        }
+        if (responseCompression.get() && !method.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            method.addHeader(HttpHeaders.ACCEPT_ENCODING, CONTENT_DECODERS.keys.joinToString(","))
+        }
+    }
+
     fun execute(method: HttpRequestBase) = execute(method) { checkStatus(it) }
 
+    // Asynchronous (non-blocking) requests
+
+    /**
+     * Client performing requests using non-blocking I/O.
+     * Shared by all clients having same connection settings and closed automatically when build is finished.
+     */
+    private val asyncClient: CloseableHttpAsyncClient
+        get() {
+            return common.buildScope.computeCloseable("${CloseableHttpAsyncClient::class.java.canonicalName}_$asyncClientFingerprint") {
+                HttpAsyncClientBuilder.create().apply(asyncClientBuilder).build().apply { start() }
+            }
+        }
+
+    private val asyncClientFingerprint: String
+        get() = listOfNotNull(
+            connectionFingerprint,
+            connectionTimeout.get(),
+            connectionRetries.get(),
+            proxy(),
+            listOf(basicUser.orNull, basicPassword.orNull, bearerToken.orNull).hashCode(),
+            asyncClientBuilderCustom?.let { System.identityHashCode(it) }
+        ).joinToString("|")
+
+    /**
+     * Customize client used by asynchronous requests (by default having same settings as synchronous one).
+     * Failed idempotent requests are retried by [executeAsync] itself when [connectionRetries] are enabled.
+     */
+    fun asyncClientBuilder(builder: HttpAsyncClientBuilder.() -> Unit) {
+        this.asyncClientBuilderCustom = builder
+    }
+
+    private var asyncClientBuilderCustom: (HttpAsyncClientBuilder.() -> Unit)? = null
+
+    private val asyncClientBuilder: HttpAsyncClientBuilder.() -> Unit get() = asyncClientBuilderCustom ?: { asyncDefaults(this) }
+
+    fun asyncDefaults(builder: HttpAsyncClientBuilder) = builder.apply {
+        useSystemProperties()
+        basicCredentialsProvider()?.let { setDefaultCredentialsProvider(it) }
+        if (!bearerToken.orNull.isNullOrBlank()) {
+            setDefaultHeaders(listOf(bearerHeader()))
+        }
+        setDefaultRequestConfig(defaultRequestConfig())
+        proxy()?.let { setProxy(it) }
+        setMaxConnTotal(connectionPoolMaxTotal.get())
+        setMaxConnPerRoute(connectionPoolMaxPerRoute.get())
+        if (connectionIgnoreSsl.get()) {
+            setSSLStrategy(SSLIOSessionStrategy(SSL_CONTEXT_IGNORING, NoopHostnameVerifier.INSTANCE))
+        }
+    }
+
+    private fun asyncContext(method: HttpRequestBase) = HttpClientContext.create().apply {
+        if (basicCredentialsProvider() != null && authorizationPreemptive.get()) {
+            authCache = BasicAuthCache().apply { put(URIUtils.extractHost(method.uri), BasicScheme()) }
+        }
+    }
+
+    fun <T> requestAsync(method: String, uri: String, handler: HttpClient.(HttpResponse) -> T) =
+        requestAsync(method, uri, {}, handler)
+
+    fun <T> requestAsync(
+        method: String,
+        uri: String,
+        options: HttpRequestBase.() -> Unit,
+        handler: HttpClient.(HttpResponse) -> T
+    ): CompletableFuture<T> = when (method.lowercase(Locale.getDefault())) {
+        "get" -> executeAsync(HttpGet(baseUrl(uri)).apply(options), handler)
+        "post" -> executeAsync(HttpPost(baseUrl(uri)).apply(options), handler)
+        "put" -> executeAsync(HttpPut(baseUrl(uri)).apply(options), handler)
+        "patch" -> executeAsync(HttpPatch(baseUrl(uri)).apply(options), handler)
+        "head" -> executeAsync(HttpHead(baseUrl(uri)).apply(options), handler)
+        "delete" -> executeAsync(HttpDelete(baseUrl(uri)).apply(options), handler)
+        else -> throw RequestException("Invalid HTTP client method: '$method'")
+    }
+
+    fun getAsync(uri: String) = getAsync(uri) { checkStatus(it) }
+
+    fun <T> getAsync(uri: String, handler: HttpClient.(HttpResponse) -> T): CompletableFuture<T> = getAsync(uri, handler) {}
+
+    fun <T> getAsync(uri: String, handler: HttpClient.(HttpResponse) -> T, options: HttpGet.() -> Unit): CompletableFuture<T> {
+        return executeAsync(HttpGet(baseUrl(uri)).apply(options), handler)
+    }
+
+    fun headAsync(uri: String) = headAsync(uri) { checkStatus(it) }
+
+    fun <T> headAsync(uri: String, handler: HttpClient.(HttpResponse) -> T): CompletableFuture<T> = headAsync(uri, handler) {}
+
+    fun <T> headAsync(uri: String, handler: HttpClient.(HttpResponse) -> T, options: HttpHead.() -> Unit): CompletableFuture<T> {
+        return executeAsync(HttpHead(baseUrl(uri)).apply(options), handler)
+    }
+
+    fun deleteAsync(uri: String) = deleteAsync(uri) { checkStatus(it) }
+
+    fun <T> deleteAsync(uri: String, handler: HttpClient.(HttpResponse) -> T): CompletableFuture<T> = deleteAsync(uri, handler) {}
+
+    fun <T> deleteAsync(uri: String, handler: HttpClient.(HttpResponse) -> T, options: HttpDelete.() -> Unit): CompletableFuture<T> {
+        return executeAsync(HttpDelete(baseUrl(uri)).apply(options), handler)
+    }
+
+    fun postAsync(uri: String, params: Map<String, Any?> = mapOf()) = postAsync(uri, params) { checkStatus(it) }
+
+    fun <T> postAsync(uri: String, params: Map<String, Any?> = mapOf(), handler: HttpClient.(HttpResponse) -> T): CompletableFuture<T> {
+        return postAsync(uri, handler) { entity = createEntityUrlencoded(params) }
+    }
+
+    fun <T> postAsync(uri: String, handler: HttpClient.(HttpResponse) -> T, options: HttpPost.() -> Unit): CompletableFuture<T> {
+        return executeAsync(HttpPost(baseUrl(uri)).apply(options), handler)
+    }
+
+    /**
+     * Perform request without blocking caller thread. Response is buffered in memory then handled using common pool.
+     * Hundreds of concurrent requests could be made using only a few I/O threads.
+     */
+    open fun <T> executeAsync(method: HttpRequestBase, handler: HttpClient.(HttpResponse) -> T): CompletableFuture<T> {
+        if (transport.get() == HttpTransport.HTTP2) {
+            return executeHttp2Async(method, handler)
+        }
+
+        requestConfigurer(method)
+        if (!bearerToken.orNull.isNullOrBlank() && !method.containsHeader(HttpHeaders.AUTHORIZATION)) {
+            method.addHeader(bearerHeader())
+        }
+        if (responseCompression.get() && !method.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            method.addHeader(HttpHeaders.ACCEPT_ENCODING, CONTENT_DECODERS.keys.joinToString(","))
+        }
+
+        val response = CompletableFuture<HttpResponse>()
+        executeAsyncAttempt(method, response, 1)
+
+        return response.thenApplyAsync { handleResponse(method, it, handler) }
+    }
+
+    /**
+     * Send request and retry it the same way as synchronous client does (only idempotent ones, only on I/O errors).
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private fun executeAsyncAttempt(method: HttpRequestBase, response: CompletableFuture<HttpResponse>, attempt: Int) {
+        try {
+            asyncClient.execute(
+                method, asyncContext(method),
+                object : FutureCallback<HttpResponse> {
+                    override fun completed(result: HttpResponse) {
+                        response.complete(result)
+                    }
+
+                    override fun failed(e: Exception) {
+                        if (retryableAsync(method, e, attempt)) {
+                            logger.debug("Retrying request to $method (attempt $attempt failed)", e)
+                            executeAsyncAttempt(method, response, attempt + 1)
+                        } else {
+                            response.completeExceptionally(RequestException("Failed request to $method! Cause: ${e.message}", e))
+                        }
+                    }
+
+                    override fun cancelled() {
+                        response.cancel(false)
+                    }
+                }
+            )
+        } catch (e: Exception) {
+            response.completeExceptionally(RequestException("Failed request to $method! Cause: ${e.message}", e))
+        }
+    }
+
+    private fun retryableAsync(method: HttpRequestBase, e: Exception, attempt: Int) = connectionRetries.get() &&
+        attempt <= ASYNC_RETRY_COUNT && e is IOException && method !is HttpEntityEnclosingRequest && !method.isAborted &&
+        ASYNC_RETRY_EXCLUDED.none { it.isInstance(e) }
+
+    /**
+     * Perform request using HTTP/2 transport. Response content is streamed while being handled using common pool.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private fun <T> executeHttp2Async(method: HttpRequestBase, handler: HttpClient.(HttpResponse) -> T): CompletableFuture<T> {
+        val response = try {
+            requestConfigurer(method)
+            http2Headers(method)
+            http2Transport.executeAsync(method)
+        } catch (e: Exception) {
+            CompletableFuture<HttpResponse>().apply { completeExceptionally(e) }
+        }
+
+        return response.handleAsync { it, error ->
+            if (error != null) {
+                throw RequestException("Failed request to $method! Cause: ${(error.cause ?: error).message}", error.cause ?: error)
+            }
+            it.entity.content.use { _ -> handleResponse(method, it, handler) }
+        }
+    }
+
+    fun executeAsync(method: HttpRequestBase) = executeAsync(method) { checkStatus(it) }
+
+    /**
+     * Wait for result of asynchronous request and rethrow original exception if failed.
+     */
+    fun <T> await(future: CompletableFuture<T>): T = try {
+        future.join()
+    } catch (e: CompletionException) {
+        throw e.cause ?: e
+    }
+
+    /**
+     * Wait for results of many asynchronous requests.
+     */
+    fun <T> awaitAll(futures: Iterable<CompletableFuture<T>>): List<T> = futures.map { await(it) }
+
     open fun createEntityUrlencoded(params: Map<String, Any?>): HttpEntity {
         return UrlEncodedFormEntity(
             params.entries.fold(mutableListOf<NameValuePair>()) { result, (key, value) ->
@@ -483,6 +905,16 @@ open class HttpClient(private val common: CommonExtension) {
 
     fun createEntity(input: InputStream) = InputStreamEntity(input)
 
+    /**
+     * Create entity compressed while being sent (for endpoints accepting 'Content-Encoding: gzip').
+     */
+    fun createEntityGzip(value: Any): HttpEntity = GzipCompressingEntity(createEntity(value))
+
+    private fun createRequestEntity(file: File): HttpEntity = when {
+        requestCompression.get() -> createEntityGzip(file)
+        else -> createEntity(file)
+    }
+
     private fun MultipartEntityBuilder.addEntityMultipart(key: String, value: Any?) {
         if (value is File && value.exists()) {
             addBinaryBody(key, value, multipartBinaryType.get(), value.name)
@@ -502,5 +934,48 @@ open class HttpClient(private val common: CommonExtension) {
 
     companion object {
         val STATUS_CODE_VALID = 200 until 300
+
+        const val CONNECTION_VALIDATE_AFTER_INACTIVITY = 2_000
+
+        private val SSL_CONTEXT_IGNORING: SSLContext by lazy {
+            SSLContextBuilder()
+                .loadTrustMaterial(null) { _, _ -> true }
+                .build()
+        }
+
+        private const val CONTENT_ENCODING_IDENTITY = "identity"
+
+        private const val ASYNC_RETRY_COUNT = 3
+
+        /**
+         * Same as excluded by default retry handler of synchronous client.
+         */
+        private val ASYNC_RETRY_EXCLUDED = listOf(
+            InterruptedIOException::class.java,
+            UnknownHostException::class.java,
+            ConnectException::class.java,
+            SSLException::class.java
+        )
+
+        /**
+         * Brotli decoder is optional, used only when available on classpath.
+         */
+        private val BROTLI_STREAM = try {
+            Class.forName("org.brotli.dec.BrotliInputStream").getConstructor(InputStream::class.java)
+        } catch (e: ReflectiveOperationException) {
+            null
+        }
+
+        private val CONTENT_DECODERS: Map<String, (InputStream) -> InputStream> = mutableMapOf<String, (InputStream) -> InputStream>(
+            "gzip" to { GZIPInputStream(it) },
+            "x-gzip" to { GZIPInputStream(it) },
+            "deflate" to { DeflateInputStream(it) }
+        ).apply {
+            BROTLI_STREAM?.let { constructor -> put("br") { constructor.newInstance(it) as InputStream } }
+        }
+
+        private val SSL_SOCKET_FACTORY_IGNORING by lazy {
+            SSLConnectionSocketFactory(SSL_CONTEXT_IGNORING, NoopHostnameVerifier.INSTANCE)
+        }
     }
 }
@@ -0,0 +1,24 @@
+package com.cognifide.gradle.common.http
+
+import java.util.*
+
+/**
+ * Implementation used by HTTP client for sending requests.
+ */
+enum class HttpTransport {
+    /**
+     * Apache HttpClient speaking HTTP/1.1 (each concurrent request uses own connection).
+     */
+    HTTP1,
+
+    /**
+     * JDK HTTP client (Java 11+) multiplexing concurrent requests over single HTTP/2 connection per origin.
+     * Falls back to HTTP/1.1 when server does not support HTTP/2.
+     */
+    HTTP2;
+
+    companion object {
+        fun of(name: String) = values().firstOrNull { it.name.equals(name, true) }
+            ?: throw RequestException("Unsupported HTTP transport '$name'! Supported are: ${values().joinToString(", ") { it.name.lowercase(Locale.ENGLISH) }}")
+    }
+}
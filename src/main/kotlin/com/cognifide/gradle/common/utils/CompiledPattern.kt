@@ -0,0 +1,71 @@
+package com.cognifide.gradle.common.utils
+
+/**
+ * Wildcard matcher (supporting '*' and '?') parsed once and reused for matching many paths.
+ * Matching is case-insensitive and behaves like 'FilenameUtils.wildcardMatch', except '*' directly followed by '?'
+ * which keeps its meaning (e.g '*?' matches at least one character).
+ */
+class CompiledPattern(val matcher: String) {
+
+    private val chars = matcher.replace(Regex("\\*+"), Patterns.WILDCARD).toCharArray()
+
+    private val wildcards = chars.count { it == WILDCARD_ANY || it == WILDCARD_SINGLE }
+
+    private val prefix = matcher.takeWhile { it != WILDCARD_ANY && it != WILDCARD_SINGLE }
+
+    private val suffix = matcher.takeLastWhile { it != WILDCARD_ANY && it != WILDCARD_SINGLE }
+
+    private val minLength = chars.count { it != WILDCARD_ANY }
+
+    fun matches(path: String): Boolean = when {
+        wildcards == 0 -> path.equals(matcher, true)
+        path.length < minLength -> false
+        !path.startsWith(prefix, true) || !path.endsWith(suffix, true) -> false
+        wildcards == 1 && chars.contains(WILDCARD_ANY) -> true // prefix and suffix already matched
+        else -> matchesWildcards(path)
+    }
+
+    /**
+     * Greedy matching with backtracking to last seen '*' only (no recursion, no regex).
+     */
+    private fun matchesWildcards(path: String): Boolean {
+        var p = 0
+        var c = 0
+        var anyC = -1
+        var anyP = 0
+
+        while (p < path.length) {
+            when {
+                c < chars.size && chars[c] == WILDCARD_ANY -> {
+                    anyC = c++
+                    anyP = p
+                }
+                c < chars.size && (chars[c] == WILDCARD_SINGLE || charsEqual(chars[c], path[p])) -> {
+                    c++
+                    p++
+                }
+                anyC >= 0 -> {
+                    c = anyC + 1
+                    p = ++anyP
+                }
+                else -> return false
+            }
+        }
+        while (c < chars.size && chars[c] == WILDCARD_ANY) {
+            c++
+        }
+        return c == chars.size
+    }
+
+    private fun charsEqual(c1: Char, c2: Char) = c1 == c2 ||
+        c1.uppercaseChar() == c2.uppercaseChar() ||
+        c1.lowercaseChar() == c2.lowercaseChar()
+
+    override fun toString() = matcher
+
+    companion object {
+        const val WILDCARD_ANY = '*'
+
+        const val WILDCARD_SINGLE = '?'
+    }
+}
@@ -1,11 +1,16 @@
 package com.cognifide.gradle.common.utils
 
 import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonPointer
+import com.fasterxml.jackson.core.JsonToken
 import com.fasterxml.jackson.core.util.DefaultIndenter
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.ObjectReader
 import com.fasterxml.jackson.databind.node.JsonNodeType
+import com.fasterxml.jackson.databind.node.MissingNode
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
 import com.fasterxml.jackson.module.kotlin.KotlinModule
 import org.apache.commons.codec.digest.DigestUtils
@@ -27,6 +32,7 @@ import java.time.LocalDateTime
 import java.time.ZoneId
 import java.time.temporal.ChronoUnit
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.math.abs
 import kotlin.math.roundToInt
 
@@ -59,38 +65,105 @@ object Formats {
 
     // JSON
 
-    private fun jsonMapper() = ObjectMapper(JsonFactory()).apply {
-        registerModule(KotlinModule.Builder().build())
+    /**
+     * Mappers, readers and writers are thread-safe once configured so they are shared to avoid costly construction
+     * (Kotlin module introspection) and to keep serializer caches warm.
+     */
+    private val jsonMapper by lazy {
+        ObjectMapper(JsonFactory()).apply {
+            registerModule(KotlinModule.Builder().build())
+        }
     }
 
-    private fun jsonWriter(pretty: Boolean) = jsonMapper().run {
-        when {
-            pretty -> writer(
-                DefaultPrettyPrinter().apply {
-                    indentArraysWith(DefaultIndenter.SYSTEM_LINEFEED_INSTANCE)
-                }
-            )
-            else -> writer()
+    private val jsonWriterPretty by lazy {
+        jsonMapper.writer(
+            DefaultPrettyPrinter().apply {
+                indentArraysWith(DefaultIndenter.SYSTEM_LINEFEED_INSTANCE)
+            }
+        )
+    }
+
+    private val jsonWriterCompact by lazy { jsonMapper.writer() }
+
+    private val jsonReaders = ConcurrentHashMap<Class<*>, ObjectReader>()
+
+    private fun jsonReader(clazz: Class<*>) = jsonReaders.computeIfAbsent(clazz) { jsonMapper.readerFor(it) }
+
+    private fun jsonWriter(pretty: Boolean) = if (pretty) jsonWriterPretty else jsonWriterCompact
+
+    fun asJson(input: InputStream) = jsonMapper.readTree(input)
+
+    fun asJson(text: String) = jsonMapper.readTree(text)
+
+    /**
+     * Read only JSON node at specified pointer without materializing whole JSON tree.
+     * Subtrees not matching the pointer are skipped and reading stops right after reaching the node.
+     */
+    fun asJson(input: InputStream, jsonPointer: String): JsonNode = jsonMapper.run {
+        factory.createParser(input).use { parser ->
+            when {
+                parser.nextToken() != null && parser.seekPointer(JsonPointer.compile(jsonPointer)) -> readTree<JsonNode>(parser)
+                else -> null
+            } ?: MissingNode.getInstance()
         }
     }
 
-    fun asJson(input: InputStream) = jsonMapper().readTree(input)
+    private fun JsonParser.seekPointer(pointer: JsonPointer): Boolean {
+        var current = pointer
+        while (!current.matches()) {
+            val found = when (currentToken) {
+                JsonToken.START_OBJECT -> seekProperty(current.matchingProperty)
+                JsonToken.START_ARRAY -> seekIndex(current.matchingIndex)
+                else -> false
+            }
+            if (!found) {
+                return false
+            }
+            current = current.tail()
+        }
+        return true
+    }
 
-    fun asJson(text: String) = jsonMapper().readTree(text)
+    private fun JsonParser.seekProperty(name: String): Boolean {
+        while (nextToken() == JsonToken.FIELD_NAME) {
+            val field = currentName
+            nextToken()
+            if (field == name) {
+                return true
+            }
+            skipChildren()
+        }
+        return false
+    }
+
+    private fun JsonParser.seekIndex(index: Int): Boolean {
+        if (index < 0) {
+            return false
+        }
+        var current = 0
+        while (nextToken() != JsonToken.END_ARRAY) {
+            if (current == index) {
+                return true
+            }
+            skipChildren()
+            current++
+        }
+        return false
+    }
 
     fun <T> toObjectFromJson(jsonNode: JsonNode, clazz: Class<T>): T? {
         if (jsonNode.isMissingNode) return null
-        return jsonMapper().treeToValue(jsonNode, clazz)
+        return jsonMapper.treeToValue(jsonNode, clazz)
     }
 
     fun <T> toMapFromJson(jsonNode: JsonNode, clazz: Class<T>): Map<String, T>? {
         if (jsonNode.isMissingNode) return null
-        return jsonMapper().run { convertValue<Map<String, T>>(jsonNode, mapType(clazz)) } ?: mapOf()
+        return jsonMapper.run { convertValue<Map<String, T>>(jsonNode, mapType(clazz)) } ?: mapOf()
     }
 
     fun <T> toListFromJson(jsonNode: JsonNode, clazz: Class<T>): List<T>? {
         if (jsonNode.isMissingNode) return null
-        return jsonMapper().run { convertValue<List<T>>(jsonNode, listType(clazz)) } ?: listOf()
+        return jsonMapper.run { convertValue<List<T>>(jsonNode, listType(clazz)) } ?: listOf()
     }
 
     fun toMapFromJson(jsonNode: JsonNode): Map<String, Any?> {
@@ -102,7 +175,7 @@ object Formats {
                     "Ensure that JSON to be converted is not blank."
             )
         }
-        return jsonMapper().run { convertValue<Map<String, Any?>>(jsonNode, mapType(Any::class.java)) } ?: mapOf()
+        return jsonMapper.run { convertValue<Map<String, Any?>>(jsonNode, mapType(Any::class.java)) } ?: mapOf()
     }
 
     fun toListFromJson(jsonNode: JsonNode): List<Any?> {
@@ -114,14 +187,14 @@ object Formats {
                     "Ensure that JSON to be converted is not blank."
             )
         }
-        return jsonMapper().run { convertValue<List<Any?>>(jsonNode, listType(Any::class.java)) } ?: listOf()
+        return jsonMapper.run { convertValue<List<Any?>>(jsonNode, listType(Any::class.java)) } ?: listOf()
     }
 
     inline fun <reified T : Any> toObjectFromJson(json: String) = toObjectFromJson(json, T::class.java)
 
-    fun <T> toObjectFromJson(input: InputStream, clazz: Class<T>): T = jsonMapper().readValue(input, clazz)
+    fun <T> toObjectFromJson(input: InputStream, clazz: Class<T>): T = jsonReader(clazz).readValue(input)
 
-    fun <T> toObjectFromJson(json: String, clazz: Class<T>): T = jsonMapper().readValue(json, clazz)
+    fun <T> toObjectFromJson(json: String, clazz: Class<T>): T = jsonReader(clazz).readValue(json)
 
     fun toMapFromJson(input: InputStream) = toMapFromJson(asJson(input))
 
@@ -133,17 +206,19 @@ object Formats {
 
     // YML
 
-    private fun ymlMapper() = ObjectMapper(YAMLFactory()).apply {
-        registerModule(KotlinModule.Builder().build())
+    private val ymlMapper by lazy {
+        ObjectMapper(YAMLFactory()).apply {
+            registerModule(KotlinModule.Builder().build())
+        }
     }
 
-    private fun ymlWriter() = ymlMapper().writer()
+    private val ymlWriter by lazy { ymlMapper.writer() }
 
-    fun asYml(input: InputStream) = ymlMapper().readTree(input)
+    fun asYml(input: InputStream) = ymlMapper.readTree(input)
 
-    fun asYml(text: String) = ymlMapper().readTree(text)
+    fun asYml(text: String) = ymlMapper.readTree(text)
 
-    fun toYml(value: Any): String = ymlWriter().writeValueAsString(value) ?: ""
+    fun toYml(value: Any): String = ymlWriter.writeValueAsString(value) ?: ""
 
     // HTML
 
@@ -226,6 +301,19 @@ object Formats {
         else -> String.format(Locale.ENGLISH, "%.2f GB", bytes / (1024.0 * 1024.0 * 1024.0))
     }
 
+    /**
+     * Parse file size like '512', '20MB', '1.5 GB' (units are powers of 1024 like in 'fileSizeBytesToHuman').
+     */
+    fun fileSizeHumanToBytes(value: String): Long {
+        val text = value.trim().uppercase(Locale.ENGLISH).removeSuffix("B").trim()
+        val unit = FILE_SIZE_UNITS.indexOf(text.lastOrNull()).coerceAtLeast(0)
+        val number = (if (unit > 0) text.dropLast(1) else text).trim().toDoubleOrNull()
+            ?: throw FormatException("Invalid file size '$value'!")
+        return (number * Math.pow(1024.0, unit.toDouble())).toLong()
+    }
+
+    private val FILE_SIZE_UNITS = listOf(null, 'K', 'M', 'G', 'T')
+
     fun percent(current: Int, total: Int, digits: Int = 0): String = percent(current.toLong(), total.toLong(), digits)
 
     fun percentExplained(current: Int, total: Int, digits: Int = 0): String = "$current/$total=${percent(current, total, digits)}"
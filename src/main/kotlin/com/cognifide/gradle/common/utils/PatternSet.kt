@@ -0,0 +1,35 @@
+package com.cognifide.gradle.common.utils
+
+import java.io.File
+
+/**
+ * Wildcard matchers with support for negation (excludes) parsed once and reused for matching many paths.
+ */
+class PatternSet(matchers: Iterable<String>) {
+
+    val matchers = matchers.toList()
+
+    private val includes = this.matchers
+        .filter { !it.startsWith(Patterns.WILDCARD_NEGATION) }
+        .map { CompiledPattern(it) }
+
+    private val excludes = this.matchers
+        .filter { it.startsWith(Patterns.WILDCARD_NEGATION) }
+        .map { CompiledPattern(it.removePrefix(Patterns.WILDCARD_NEGATION)) }
+
+    fun matches(file: File) = matches(file.absolutePath)
+
+    fun matches(path: String): Boolean {
+        val normalizedPath = Formats.normalizePath(path)
+        return includes.any { it.matches(normalizedPath) } && excludes.none { it.matches(normalizedPath) }
+    }
+
+    override fun toString() = matchers.toString()
+
+    companion object {
+
+        fun of(matcher: String) = PatternSet(Patterns.split(matcher))
+
+        fun of(vararg matchers: String) = PatternSet(matchers.asIterable())
+    }
+}
@@ -1,8 +1,7 @@
 package com.cognifide.gradle.common.utils
 
-import org.apache.commons.io.FilenameUtils
-import org.apache.commons.io.IOCase
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 
 object Patterns {
 
@@ -12,6 +11,10 @@ object Patterns {
 
     const val WILDCARD_SEPARATOR = ","
 
+    private const val COMPILED_CACHE_SIZE = 1000
+
+    private val compiled = ConcurrentHashMap<List<String>, PatternSet>()
+
     fun wildcard(file: File, matcher: String): Boolean {
         return wildcard(file.absolutePath, matcher)
     }
@@ -21,28 +24,33 @@ object Patterns {
     }
 
     fun wildcard(path: String, matcher: String): Boolean {
-        return wildcard(
-            path,
-            if (matcher.contains(WILDCARD_SEPARATOR)) {
-                matcher.split(WILDCARD_SEPARATOR)
-            } else {
-                listOf(matcher)
-            }
-        )
+        return wildcard(path, split(matcher))
     }
 
     fun wildcard(path: String, matchers: Iterable<String>): Boolean {
-        val includes = matchers.filter { !it.startsWith(WILDCARD_NEGATION) }
-        val excludes = matchers.filter { it.startsWith(WILDCARD_NEGATION) }.map { it.removePrefix(WILDCARD_NEGATION) }
-
-        return wildcardMatch(path, includes, excludes)
+        return compile(matchers).matches(path)
     }
 
-    private fun wildcardMatch(path: String, includes: Iterable<String>, excludes: Iterable<String>): Boolean {
-        return includes.any { wildcardMatch(path, it) } && excludes.none { wildcardMatch(path, it) }
+    /**
+     * Parse matchers separated by comma once, to reuse them for matching many paths.
+     */
+    fun compile(matcher: String) = compile(split(matcher))
+
+    /**
+     * Parse matchers once, to reuse them for matching many paths.
+     */
+    fun compile(matchers: Iterable<String>): PatternSet {
+        val key = matchers.toList()
+        compiled[key]?.let { return it }
+        if (compiled.size >= COMPILED_CACHE_SIZE) {
+            compiled.clear()
+        }
+        return compiled.computeIfAbsent(key) { PatternSet(it) }
     }
 
-    private fun wildcardMatch(path: String, matcher: String): Boolean {
-        return FilenameUtils.wildcardMatch(Formats.normalizePath(path), matcher, IOCase.INSENSITIVE)
+    fun split(matcher: String): List<String> = if (matcher.contains(WILDCARD_SEPARATOR)) {
+        matcher.split(WILDCARD_SEPARATOR)
+    } else {
+        listOf(matcher)
     }
 }
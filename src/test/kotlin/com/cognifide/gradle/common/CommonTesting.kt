@@ -0,0 +1,22 @@
+package com.cognifide.gradle.common
+
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import java.io.File
+
+/**
+ * Shared fixtures of tests requiring project with plugin applied.
+ */
+object CommonTesting {
+
+    /**
+     * Create project with plugin applied. Project and Gradle user home directories are isolated in given directory.
+     */
+    fun project(dir: File): Project = ProjectBuilder.builder()
+        .withProjectDir(dir.resolve("project").apply { mkdirs() })
+        .withGradleUserHomeDir(dir.resolve("home"))
+        .build()
+        .also { it.plugins.apply(CommonPlugin::class.java) }
+
+    fun common(dir: File): CommonExtension = project(dir).common
+}
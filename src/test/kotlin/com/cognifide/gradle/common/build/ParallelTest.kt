@@ -0,0 +1,23 @@
+package com.cognifide.gradle.common.build
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.ConcurrentHashMap
+
+class ParallelTest {
+
+    @Test
+    fun shouldReleasePoolThreads() {
+        val threads = ConcurrentHashMap.newKeySet<Thread>()
+        repeat(10) {
+            assertEquals(listOf(2, 4, 6), Parallel.poolMap(3, listOf(1, 2, 3)) { threads += Thread.currentThread(); it * 2 })
+        }
+
+        val deadline = System.currentTimeMillis() + 5_000
+        while (threads.any { it.isAlive } && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        assertTrue(threads.none { it.isAlive })
+    }
+}
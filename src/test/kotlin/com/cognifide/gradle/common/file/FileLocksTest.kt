@@ -0,0 +1,50 @@
+package com.cognifide.gradle.common.file
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class FileLocksTest {
+
+    @Test
+    fun shouldPerformActionsExclusively(@TempDir dir: File) {
+        val lockFile = dir.resolve("locks/file.lock")
+        val active = AtomicInteger()
+        val maxActive = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(4)
+
+        repeat(8) {
+            executor.submit {
+                FileLocks.lock(lockFile) {
+                    maxActive.accumulateAndGet(active.incrementAndGet()) { a, b -> maxOf(a, b) }
+                    Thread.sleep(10)
+                    active.decrementAndGet()
+                }
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        assertEquals(1, maxActive.get())
+    }
+
+    @Test
+    fun shouldSkipActionWhenAlreadyLocked(@TempDir dir: File) {
+        val lockFile = dir.resolve("file.lock")
+        var performed = false
+
+        FileLocks.lock(lockFile) {
+            Executors.newSingleThreadExecutor().apply {
+                submit { FileLocks.tryLock(lockFile) { performed = true } }.get()
+                shutdown()
+            }
+        }
+
+        assertFalse(performed)
+    }
+}
@@ -0,0 +1,133 @@
+package com.cognifide.gradle.common.file.archive
+
+import com.cognifide.gradle.common.file.FileException
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.io.OutputStream
+import java.util.zip.GZIPOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ArchiveExtractorTest {
+
+    private val entries = mapOf(
+        "app/README.md" to "readme",
+        "app/libs/core-1.0.0.jar" to "core",
+        "app/libs/extra/plugin-1.0.0.jar" to "plugin",
+        "app/${"long".repeat(40)}/app.jar" to "app"
+    )
+
+    @Test
+    fun shouldMatchEntries() {
+        ArchiveEntryMatcher("**/*.jar").apply {
+            assertTrue(matches("core.jar"))
+            assertTrue(matches("app/libs/core.jar"))
+            assertFalse(matches("app/README.md"))
+        }
+        ArchiveEntryMatcher("app/libs/*.jar").apply {
+            assertTrue(matches("app/libs/core-1.0.0.jar"))
+            assertFalse(matches("app/libs/extra/plugin-1.0.0.jar"))
+        }
+        ArchiveEntryMatcher("app/**/plugin-?.?.?.jar").apply {
+            assertTrue(matches("app/libs/extra/plugin-1.0.0.jar"))
+            assertFalse(matches("app/libs/extra/plugin-1.0.10.jar"))
+        }
+        assertTrue(ArchiveEntryMatcher("app/").matches("app/libs/core.jar"))
+    }
+
+    @Test
+    fun shouldExtractZipEntries(@TempDir dir: File) {
+        val archive = dir.resolve("app.zip").apply { zip(this) }
+        val extracted = ArchiveExtractor(archive, 4).extract("**/*.jar") { dir.resolve("out/${it.substringAfterLast("/")}") }
+
+        assertEquals(3, extracted.size)
+        assertEquals("plugin", dir.resolve("out/plugin-1.0.0.jar").readText())
+        assertEquals("core", ArchiveExtractor(archive).extractSingle("**/core-*.jar", dir.resolve("core.jar")).readText())
+    }
+
+    @Test
+    fun shouldExtractTarGzEntries(@TempDir dir: File) {
+        val archive = dir.resolve("app.tar.gz").apply { GZIPOutputStream(outputStream()).use { tar(it) } }
+        val extracted = ArchiveExtractor(archive).extract("**/*.jar") { dir.resolve("out/${it.substringAfterLast("/")}") }
+
+        assertEquals(3, extracted.size)
+        assertEquals("app", dir.resolve("out/app.jar").readText())
+        assertEquals("readme", ArchiveExtractor(archive).extractSingle("app/README.md", dir.resolve("README.md")).readText())
+        assertThrows<FileException> { ArchiveExtractor(archive).extractSingle("**/*.jar", dir.resolve("any.jar")) }
+        assertFalse(dir.resolve("any.jar").exists())
+    }
+
+    @Test
+    fun shouldRespectPaxRecords(@TempDir dir: File) {
+        val path = "app/libs/${"pax".repeat(40)}/app.jar"
+        val records = listOf(pax("comment", "multi\nline"), pax("path", path), pax("size", "3")).joinToString("")
+        val archive = dir.resolve("app.tar").apply {
+            outputStream().use { output ->
+                tarEntry(output, "PaxHeader", 'x', records.toByteArray())
+                tarEntry(output, "app.jar", '0', "app".toByteArray(), 0) // name and size in header are overridden
+                output.write(ByteArray(1024))
+            }
+        }
+
+        assertEquals("app", ArchiveExtractor(archive).extractSingle("**/pax*/app.jar", dir.resolve("app.jar")).readText())
+    }
+
+    @Test
+    fun shouldFailWhenTarHeaderChecksumIsInvalid(@TempDir dir: File) {
+        val archive = dir.resolve("app.tar").apply {
+            outputStream().use { output ->
+                tarEntry(output, "app/app.jar", '0', "app".toByteArray())
+                output.write(ByteArray(1024))
+            }
+            writeBytes(readBytes().apply { this[0] = 'b'.code.toByte() }) // corrupt name after computing checksum
+        }
+
+        assertThrows<ArchiveException> { ArchiveExtractor(archive).extractSingle("**/*.jar", dir.resolve("app.jar")) }
+        assertFalse(dir.resolve("app.jar").exists())
+    }
+
+    private fun pax(key: String, value: String): String {
+        val record = " $key=$value\n"
+        var length = record.length + 1
+        while ("$length$record".length != length) {
+            length++
+        }
+        return "$length$record"
+    }
+
+    private fun zip(file: File) = ZipOutputStream(file.outputStream()).use { output ->
+        entries.forEach { (path, content) ->
+            output.putNextEntry(ZipEntry(path))
+            output.write(content.toByteArray())
+            output.closeEntry()
+        }
+    }
+
+    private fun tar(output: OutputStream) {
+        entries.forEach { (path, content) ->
+            if (path.length > 100) {
+                tarEntry(output, "././@LongLink", 'L', "$path\u0000".toByteArray())
+            }
+            tarEntry(output, path.take(100), '0', content.toByteArray())
+        }
+        output.write(ByteArray(1024))
+    }
+
+    private fun tarEntry(output: OutputStream, name: String, type: Char, data: ByteArray, size: Int = data.size) {
+        val header = ByteArray(512)
+        name.toByteArray().copyInto(header, 0)
+        "%011o\u0000".format(size).toByteArray().copyInto(header, 124)
+        header[156] = type.code.toByte()
+        "ustar\u000000".toByteArray().copyInto(header, 257)
+        "        ".toByteArray().copyInto(header, 148)
+        "%06o\u0000 ".format(header.sumOf { it.toInt() and 0xFF }).toByteArray().copyInto(header, 148)
+        output.write(header)
+        output.write(data)
+        output.write(ByteArray((512 - data.size % 512) % 512))
+    }
+}
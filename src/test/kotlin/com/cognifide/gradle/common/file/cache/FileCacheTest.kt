@@ -0,0 +1,71 @@
+package com.cognifide.gradle.common.file.cache
+
+import com.cognifide.gradle.common.CommonTesting
+import com.cognifide.gradle.common.file.transfer.FileVersion
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class FileCacheTest {
+
+    @Test
+    fun shouldNotTouchLinkedFilesWhenUsingCache(@TempDir dir: File) {
+        val cache = cache(dir)
+        var downloads = 0
+        val downloader: (File) -> Unit = { downloads++; it.writeText("content") }
+
+        val first = dir.resolve("first/app.zip")
+        cache.download(URL, { VERSION }, first, downloader)
+        first.setLastModified(MODIFIED)
+
+        val second = dir.resolve("second/app.zip")
+        cache.download(URL, { VERSION }, second, downloader)
+
+        assertEquals(1, downloads)
+        assertEquals("content", second.readText())
+        assertEquals(MODIFIED, first.lastModified())
+    }
+
+    @Test
+    fun shouldDownloadAgainWhenCachedFileIsEvicted(@TempDir dir: File) {
+        val cache = cache(dir)
+        var downloads = 0
+        val downloader: (File) -> Unit = { downloads++; it.writeText("content") }
+
+        cache.download(URL, { VERSION }, dir.resolve("first/app.zip"), downloader)
+        cache.dir.get().asFile.resolve(FileCache.BLOBS_DIR).listFiles()?.forEach { it.delete() }
+        cache.download(URL, { VERSION }, dir.resolve("second/app.zip"), downloader)
+
+        assertEquals(2, downloads)
+        assertEquals("content", dir.resolve("second/app.zip").readText())
+    }
+
+    @Test
+    fun shouldDownloadAgainWhenVersionIsUnknown(@TempDir dir: File) {
+        val cache = cache(dir)
+        var downloads = 0
+        val downloader: (File) -> Unit = { downloads++; it.writeText("content") }
+
+        cache.download(URL, { null }, dir.resolve("first/app.zip"), downloader)
+        cache.download(URL, { FileVersion(size = 7) }, dir.resolve("second/app.zip"), downloader)
+
+        assertEquals(2, downloads)
+        assertEquals("content", dir.resolve("second/app.zip").readText())
+        assertEquals(1, cache.dir.get().asFile.resolve(FileCache.BLOBS_DIR).listFiles()?.size)
+    }
+
+    private fun cache(tmpDir: File) = CommonTesting.common(tmpDir).fileCache
+        .apply {
+            enabled.set(true)
+            dir.set(tmpDir.resolve("cache"))
+        }
+
+    companion object {
+        const val URL = "http://example.com/files/app.zip"
+
+        const val MODIFIED = 1_600_000_000_000L
+
+        val VERSION = FileVersion(size = 7, etag = "\"v1\"")
+    }
+}
@@ -0,0 +1,35 @@
+package com.cognifide.gradle.common.file.resolver
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class ResolverIndexTest {
+
+    @Test
+    fun shouldFindFilesRecordedByPreviousBuild(@TempDir dir: File) {
+        val file = dir.resolve("files/app.zip").apply { parentFile.mkdirs(); writeText("app") }
+        val indexFile = dir.resolve(ResolverIndex.FILE_NAME)
+
+        ResolverIndex(indexFile).use { it.record("http://example.com/app.zip", file, true) }
+
+        val entry = ResolverIndex(indexFile).find("http://example.com/app.zip")
+        assertNotNull(entry)
+        assertEquals(file.absoluteFile, entry!!.file)
+        assertEquals(true, entry.parallel)
+    }
+
+    @Test
+    fun shouldSkipChangedFiles(@TempDir dir: File) {
+        val file = dir.resolve("app.zip").apply { writeText("app") }
+        val indexFile = dir.resolve(ResolverIndex.FILE_NAME)
+
+        ResolverIndex(indexFile).use { it.record("group:app:1.0.0@zip", file, false) }
+        file.writeText("app changed")
+
+        assertNull(ResolverIndex(indexFile).find("group:app:1.0.0@zip"))
+    }
+}
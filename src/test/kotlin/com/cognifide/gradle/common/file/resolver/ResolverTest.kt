@@ -0,0 +1,122 @@
+package com.cognifide.gradle.common.file.resolver
+
+import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.CommonTesting
+import com.sun.net.httpserver.HttpServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.net.InetSocketAddress
+import java.util.concurrent.CopyOnWriteArrayList
+
+class ResolverTest {
+
+    @Volatile
+    private var version = "v1"
+
+    private val responses = CopyOnWriteArrayList<String>()
+
+    private val sidecarRequests = CopyOnWriteArrayList<String>()
+
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+        createContext("/") { exchange ->
+            val etag = "\"$version\""
+            val status = when {
+                exchange.requestURI.path != "/files/app.zip" -> 404
+                exchange.requestHeaders.getFirst("If-None-Match") == etag -> 304
+                else -> 200
+            }
+            if (exchange.requestURI.path == "/files/app.zip") {
+                responses += "${exchange.requestMethod} $status"
+            } else {
+                sidecarRequests += exchange.requestURI.path
+            }
+            if (status == 200) {
+                exchange.responseHeaders.add("ETag", etag)
+            }
+            if (status == 200 && exchange.requestMethod == "GET") {
+                val content = "content $version".toByteArray()
+                exchange.sendResponseHeaders(status, content.size.toLong())
+                exchange.responseBody.write(content)
+            } else {
+                exchange.sendResponseHeaders(status, -1)
+            }
+            exchange.close()
+        }
+        start()
+    }
+
+    private val url = "http://127.0.0.1:${server.address.port}/files/app.zip"
+
+    @AfterEach
+    fun stop() {
+        server.stop(0)
+    }
+
+    @Test
+    fun shouldKeepResolvedFileWhenNotModified(@TempDir dir: File) {
+        val common = common(dir)
+        val file = resolve(common, dir)
+        file.setLastModified(MODIFIED)
+
+        resolve(common, dir)
+
+        assertEquals("content v1", file.readText())
+        assertEquals(MODIFIED, file.lastModified())
+        assertEquals(listOf("GET 200", "GET 304"), responses)
+    }
+
+    @Test
+    fun shouldReplaceResolvedFileWhenModified(@TempDir dir: File) {
+        val common = common(dir)
+        val file = resolve(common, dir)
+        version = "v2"
+
+        resolve(common, dir)
+
+        assertEquals("content v2", file.readText())
+        assertEquals(listOf("GET 200", "GET 200"), responses)
+    }
+
+    @Test
+    fun shouldNotReadChecksumFilesWhenNotModified(@TempDir dir: File) {
+        val common = common(dir).apply { fileTransfer.checksum.verify.set(true) }
+        val file = resolve(common, dir)
+
+        resolve(common, dir)
+
+        assertEquals("content v1", file.readText())
+        assertEquals(listOf("GET 200", "GET 304"), responses)
+        assertEquals(listOf("/files/app.zip.sha256", "/files/app.zip.sha1", "/files/app.zip.md5"), sidecarRequests)
+    }
+
+    @Test
+    fun shouldKeepResolvedFileWhenNotModifiedUsingCache(@TempDir dir: File) {
+        val common = common(dir).apply { fileCache.enabled.set(true) }
+        val file = resolve(common, dir)
+
+        resolve(common, dir)
+
+        assertEquals("content v1", file.readText())
+        assertEquals(listOf("HEAD 200", "GET 200", "HEAD 200"), responses)
+    }
+
+    /**
+     * Resolves file from remote URL the same way as resolver does (using cache and file transfer manager).
+     */
+    private fun resolve(common: CommonExtension, dir: File) = dir.resolve("download/app.zip").apply {
+        val http = common.fileTransfer.http
+        common.fileCache.download(url, { http.version(url) }, this, common.fileTransfer.revalidating(http)) {
+            common.fileTransfer.downloadUsing(http, url, it)
+        }
+    }
+
+    private fun common(dir: File) = CommonTesting.common(dir)
+        .apply { fileTransfer.revalidate.set(true) }
+
+    companion object {
+        const val MODIFIED = 1_600_000_000_000L
+    }
+}
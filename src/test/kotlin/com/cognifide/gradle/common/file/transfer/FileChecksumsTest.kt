@@ -0,0 +1,37 @@
+package com.cognifide.gradle.common.file.transfer
+
+import org.apache.commons.codec.digest.DigestUtils
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class FileChecksumsTest {
+
+    @Test
+    fun shouldComputeChecksumsWhileUpdating(@TempDir dir: File) {
+        val file = dir.resolve("file.bin").apply { writeBytes(ByteArray(100_000) { (it % 251).toByte() }) }
+        val bytes = file.readBytes()
+        val checksums = FileChecksums(ChecksumAlgorithm.values().toList())
+
+        checksums.update(bytes, 0, 1000)
+        checksums.update(bytes, 1000, bytes.size - 1000)
+        checksums.complete(file)
+
+        assertEquals(DigestUtils.md5Hex(bytes), checksums[ChecksumAlgorithm.MD5])
+        assertEquals(DigestUtils.sha1Hex(bytes), checksums[ChecksumAlgorithm.SHA1])
+        assertEquals(DigestUtils.sha256Hex(bytes), checksums[ChecksumAlgorithm.SHA256])
+    }
+
+    @Test
+    fun shouldRecomputeChecksumsWhenFileNotCovered(@TempDir dir: File) {
+        val file = dir.resolve("file.bin").apply { writeText("resumed download") }
+        val checksums = FileChecksums(listOf(ChecksumAlgorithm.SHA256))
+
+        checksums.update(file, 7)
+        checksums.complete(file)
+
+        assertEquals(DigestUtils.sha256Hex(file.readBytes()), checksums[ChecksumAlgorithm.SHA256])
+        assertEquals(ChecksumAlgorithm.SHA256, ChecksumAlgorithm.of("SHA-256"))
+    }
+}
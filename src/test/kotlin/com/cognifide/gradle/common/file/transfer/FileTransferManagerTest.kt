@@ -0,0 +1,149 @@
+package com.cognifide.gradle.common.file.transfer
+
+import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.CommonTesting
+import com.cognifide.gradle.common.file.FileException
+import org.apache.commons.codec.digest.DigestUtils
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class FileTransferManagerTest {
+
+    @Test
+    fun shouldDownloadSameUrlOnceWhenRequestedConcurrently(@TempDir dir: File) {
+        val common = CommonTesting.common(dir)
+        val transfer = CountingTransfer(common, false)
+        val first = dir.resolve("first/app.zip")
+        val second = dir.resolve("second/app.zip")
+
+        val errors = downloadConcurrently(common.fileTransfer, transfer, first, second)
+
+        assertEquals(listOf<Throwable?>(null, null), errors)
+        assertEquals(1, transfer.count.get())
+        assertEquals("content", first.readText())
+        assertEquals("content", second.readText())
+    }
+
+    @Test
+    fun shouldPropagateFailureToConcurrentDownload(@TempDir dir: File) {
+        val common = CommonTesting.common(dir)
+        val transfer = CountingTransfer(common, true)
+        val first = dir.resolve("first/app.zip")
+        val second = dir.resolve("second/app.zip")
+
+        val (leaderError, followerError) = downloadConcurrently(common.fileTransfer, transfer, first, second)
+
+        assertEquals(1, transfer.count.get())
+        assertTrue(leaderError is FileException)
+        assertTrue(followerError is FileTransferException)
+        assertEquals(leaderError, followerError?.cause)
+        assertFalse(first.exists())
+        assertFalse(second.exists())
+    }
+
+    @Test
+    fun shouldDownloadFileWithoutChecksumFileWhenNotStrict(@TempDir dir: File) {
+        val common = CommonTesting.common(dir).apply { fileTransfer.checksum.verify.set(true) }
+        val target = dir.resolve("download/app.zip")
+
+        downloadChecked(common, mapOf("app.zip" to "content"), target)
+
+        assertEquals("content", target.readText())
+    }
+
+    @Test
+    fun shouldFailWhenChecksumFileIsMissingAndStrict(@TempDir dir: File) {
+        val common = CommonTesting.common(dir).apply {
+            fileTransfer.checksum.verify.set(true)
+            fileTransfer.checksum.strict.set(true)
+        }
+        val target = dir.resolve("download/app.zip")
+
+        assertThrows<FileTransferException> { downloadChecked(common, mapOf("app.zip" to "content"), target) }
+
+        assertEquals(listOf<String>(), target.parentFile.list()?.toList())
+    }
+
+    @Test
+    fun shouldVerifyChecksumWhenStrict(@TempDir dir: File) {
+        val common = CommonTesting.common(dir).apply {
+            fileTransfer.checksum.verify.set(true)
+            fileTransfer.checksum.strict.set(true)
+        }
+        val target = dir.resolve("download/app.zip")
+
+        downloadChecked(common, mapOf("app.zip" to "content", "app.zip.sha1" to DigestUtils.sha1Hex("content")), target)
+
+        assertEquals("content", target.readText())
+    }
+
+    /**
+     * Downloads file using transfer serving given files (of names mapped to contents).
+     */
+    private fun downloadChecked(common: CommonExtension, files: Map<String, String>, target: File) {
+        common.fileTransfer.custom("memory") {
+            download { _, fileName, file -> file.writeText(files[fileName] ?: throw FileException("File '$fileName' not found")) }
+        }
+        common.fileTransfer.downloadUsing(common.fileTransfer.named("memory"), "memory://host/files/app.zip", target)
+    }
+
+    /**
+     * Starts following download only when leading one is in progress, then lets leading one finish.
+     */
+    private fun downloadConcurrently(manager: FileTransferManager, transfer: CountingTransfer, first: File, second: File): List<Throwable?> {
+        val errors = arrayOfNulls<Throwable>(2)
+        val leader = thread { errors[0] = runCatching { manager.downloadUsing(transfer, URL, first) }.exceptionOrNull() }
+        assertTrue(transfer.started.await(TIMEOUT, TimeUnit.MILLISECONDS))
+
+        val follower = thread { errors[1] = runCatching { manager.downloadUsing(transfer, URL, second) }.exceptionOrNull() }
+        val deadline = System.currentTimeMillis() + TIMEOUT
+        while (follower.state != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(POLL_INTERVAL)
+        }
+        transfer.release.countDown()
+
+        leader.join(TIMEOUT)
+        follower.join(TIMEOUT)
+        return errors.toList()
+    }
+
+    private class CountingTransfer(common: CommonExtension, private val failing: Boolean) : AbstractFileTransfer(common) {
+
+        override val name = "counting"
+
+        override fun handles(fileUrl: String) = fileUrl.startsWith("counting://")
+
+        val count = AtomicInteger()
+
+        val started = CountDownLatch(1)
+
+        val release = CountDownLatch(1)
+
+        override fun downloadFrom(dirUrl: String, fileName: String, target: File) {
+            count.incrementAndGet()
+            started.countDown()
+            release.await(TIMEOUT, TimeUnit.MILLISECONDS)
+            if (failing) {
+                throw FileException("Cannot download file '$fileName'")
+            }
+            target.writeText("content")
+        }
+    }
+
+    companion object {
+        const val URL = "counting://host/files/app.zip"
+
+        const val TIMEOUT = 10_000L
+
+        const val POLL_INTERVAL = 10L
+    }
+}
@@ -0,0 +1,47 @@
+package com.cognifide.gradle.common.file.transfer
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class FileTransferRateLimiterTest {
+
+    private var now = 0L
+
+    private val sleeps = mutableListOf<Long>()
+
+    private fun limiter(bytesPerSecond: Long) = FileTransferRateLimiter(bytesPerSecond, { now }, { sleeps += it; now += it })
+
+    @Test
+    fun shouldWaitWhenBucketIsEmpty() {
+        val limiter = limiter(1_000)
+
+        limiter.acquire(1_000)
+        limiter.acquire(500)
+        limiter.acquire(1_000)
+
+        assertEquals(listOf(500_000_000L, 1_000_000_000L), sleeps)
+    }
+
+    @Test
+    fun shouldRefillBucketAfterLongIdleGap() {
+        val limiter = limiter(100L * 1024 * 1024)
+
+        limiter.acquire(100L * 1024 * 1024)
+        now += IDLE_NANOS
+        limiter.acquire(100L * 1024 * 1024)
+        now += IDLE_NANOS
+        limiter.acquire(150L * 1024 * 1024)
+
+        assertEquals(listOf(500_000_000L), sleeps)
+    }
+
+    @Test
+    fun shouldRejectInvalidLimit() {
+        assertThrows<FileTransferException> { FileTransferRateLimiter(0) }
+    }
+
+    companion object {
+        const val IDLE_NANOS = 100_000_000_000L // long enough to overflow when multiplying longs
+    }
+}
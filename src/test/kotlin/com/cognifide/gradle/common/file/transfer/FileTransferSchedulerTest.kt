@@ -0,0 +1,146 @@
+package com.cognifide.gradle.common.file.transfer
+
+import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.CommonTesting
+import com.cognifide.gradle.common.file.FileException
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTimeoutPreemptively
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+class FileTransferSchedulerTest {
+
+    private val started = CopyOnWriteArrayList<String>()
+
+    private val running = ConcurrentHashMap<String, AtomicInteger>()
+
+    private val maxRunning = ConcurrentHashMap<String, Int>()
+
+    @Test
+    fun shouldServeHostsInRoundRobinOrder(@TempDir dir: File) {
+        val common = common(dir)
+
+        common.fileTransfer.schedule {
+            maxConcurrency.set(1)
+            listOf("a/1", "a/2", "a/3", "a/4", "b/1", "b/2").forEach { enqueue("test://host-$it.zip", dir) }
+        }
+
+        assertEquals(listOf("host-a/1", "host-b/1", "host-a/2", "host-b/2", "host-a/3", "host-a/4"), started)
+    }
+
+    @Test
+    fun shouldRespectPerHostLimit(@TempDir dir: File) {
+        val common = common(dir)
+
+        common.fileTransfer.schedule {
+            maxConcurrency.set(4)
+            maxPerHost.set(2)
+            (1..6).forEach { enqueue("test://host-a/$it.zip", dir) }
+            (1..6).forEach { enqueue("test://host-b/$it.zip", dir) }
+        }
+
+        assertEquals(12, started.size)
+        assertTrue(maxRunning.getValue("host-a") <= 2)
+        assertTrue(maxRunning.getValue("host-b") <= 2)
+        assertTrue(maxRunning.getValue(ALL) <= 4)
+    }
+
+    @Test
+    fun shouldRunNotParallelableJobsSequentially(@TempDir dir: File) {
+        val common = common(dir)
+
+        common.fileTransfer.schedule {
+            maxConcurrency.set(4)
+            (1..4).forEach { enqueue("serial://host-c/$it.zip", dir) }
+        }
+
+        assertEquals(4, started.size)
+        assertEquals(1, maxRunning.getValue(ALL))
+    }
+
+    @Test
+    fun shouldReportAllFailures(@TempDir dir: File) {
+        val common = common(dir)
+
+        val error = assertThrows<FileTransferException> {
+            common.fileTransfer.schedule {
+                maxConcurrency.set(2)
+                listOf("fail-1", "ok", "fail-2", "fail-3").forEach { enqueue("test://host-a/$it.zip", dir) }
+            }
+        }
+
+        assertEquals(2, error.suppressed.size)
+        assertEquals(
+            setOf("fail-1.zip", "fail-2.zip", "fail-3.zip"),
+            (listOf(error.cause!!) + error.suppressed).map { failedFile(it) }.toSet()
+        )
+        assertEquals("content", dir.resolve("download/host-a/ok.zip").readText())
+    }
+
+    @Test
+    fun shouldNotHangWhenLimitsAreNotPositive(@TempDir dir: File) {
+        val common = common(dir)
+
+        assertTimeoutPreemptively(Duration.ofMillis(TIMEOUT)) {
+            common.fileTransfer.schedule {
+                maxConcurrency.set(0)
+                maxPerHost.set(-1)
+                (1..3).forEach { enqueue("test://host-a/$it.zip", dir) }
+            }
+        }
+
+        assertEquals(3, started.size)
+    }
+
+    private fun CommonExtension.transfer(name: String, parallel: Boolean) = fileTransfer.custom(name) {
+        parallelable.set(parallel)
+        download { dirUrl, fileName, target ->
+            val host = dirUrl.substringAfter("://")
+            started += "$host/${fileName.substringBefore(".")}"
+            measure(host) { measure(ALL) { Thread.sleep(JOB_TIME) } }
+            if (fileName.startsWith("fail")) {
+                throw FileException("Cannot download file '$fileName'")
+            }
+            target.writeText("content")
+        }
+    }
+
+    private fun measure(key: String, action: () -> Unit) {
+        val counter = running.computeIfAbsent(key) { AtomicInteger() }
+        val current = counter.incrementAndGet()
+        maxRunning.merge(key, current) { previous, next -> maxOf(previous, next) }
+        try {
+            action()
+        } finally {
+            counter.decrementAndGet()
+        }
+    }
+
+    private fun failedFile(error: Throwable): String? = generateSequence(error) { it.cause }
+        .mapNotNull { FAILED_FILE.find(it.message.orEmpty())?.groupValues?.get(1) }
+        .firstOrNull()
+
+    private fun FileTransferScheduler.enqueue(fileUrl: String, dir: File) = download(fileUrl, dir.resolve("download/${fileUrl.substringAfter("://")}"))
+
+    private fun common(dir: File) = CommonTesting.common(dir).apply {
+        transfer("test", true)
+        transfer("serial", false)
+    }
+
+    companion object {
+        const val ALL = "all"
+
+        const val JOB_TIME = 50L
+
+        const val TIMEOUT = 10_000L
+
+        val FAILED_FILE = Regex("'(fail-\\d\\.zip)'")
+    }
+}
@@ -0,0 +1,53 @@
+package com.cognifide.gradle.common.file.transfer
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class FileTransferTrackerTest {
+
+    private var now = 0L
+
+    @Test
+    fun shouldCalculateAverageRate() {
+        val parent = FileTransferTracker(null) { now }
+        val tracker = FileTransferTracker(parent) { now }
+
+        tracker.expect(4_000)
+        tracker.record(1_000)
+        now += 500
+        tracker.record(1_000)
+        now += 1_500
+
+        assertEquals(1_000, tracker.rate)
+        assertEquals(2_000, tracker.processedBytes)
+        assertEquals(2_000, parent.processedBytes)
+        assertEquals(4_000, parent.expectedBytes)
+    }
+
+    @Test
+    fun shouldCalculateMovingAverage() {
+        val tracker = FileTransferTracker(null) { now }
+
+        tracker.record(1_000)
+        now += 1_000
+        assertEquals(1_000, tracker.throughput)
+
+        tracker.record(2_000)
+        now += 1_000
+        assertEquals(1_300, tracker.throughput) // 0.3 * 2000 + 0.7 * 1000
+
+        now += 2_000
+        assertEquals(637.0, tracker.throughput.toDouble(), 1.0) // idle windows are decreasing rate: 1300 * 0.7 * 0.7
+    }
+
+    @Test
+    fun shouldEstimateRemainingTime() {
+        val tracker = FileTransferTracker(null) { now }
+
+        tracker.expect(5_000)
+        tracker.record(1_000)
+        now += 1_000
+
+        assertEquals(4_000, tracker.remainingTime)
+    }
+}
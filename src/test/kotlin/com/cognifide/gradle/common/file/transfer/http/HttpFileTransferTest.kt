@@ -0,0 +1,201 @@
+package com.cognifide.gradle.common.file.transfer.http
+
+import com.cognifide.gradle.common.CommonTesting
+import com.cognifide.gradle.common.file.transfer.FileTransferManager
+import com.cognifide.gradle.common.file.transfer.FileVersion
+import com.sun.net.httpserver.HttpServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.net.InetSocketAddress
+import java.util.concurrent.CopyOnWriteArrayList
+
+class HttpFileTransferTest {
+
+    private val content = "0123456789".repeat(100).toByteArray()
+
+    private val requests = CopyOnWriteArrayList<String>()
+
+    private val rangeRequests = CopyOnWriteArrayList<String>()
+
+    @Volatile
+    private var rangedEtag = "\"v1\""
+
+    @Volatile
+    private var rangeShift = 0
+
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+        createContext("/") { exchange ->
+            requests += "${exchange.requestMethod} ${exchange.requestURI.path}"
+            if (exchange.requestURI.path == "/files/plain.zip") { // no byte ranges support
+                exchange.responseHeaders.add("ETag", "\"v2\"")
+                exchange.sendResponseHeaders(200, -1)
+                exchange.close()
+                return@createContext
+            }
+            if (exchange.requestURI.path != "/files/app.zip") {
+                exchange.sendResponseHeaders(404, -1)
+                exchange.close()
+                return@createContext
+            }
+            exchange.responseHeaders.add("Accept-Ranges", "bytes")
+            exchange.responseHeaders.add("ETag", "\"v1\"")
+            if (exchange.requestMethod == "HEAD") {
+                exchange.responseHeaders.add("Content-Length", content.size.toString())
+                exchange.sendResponseHeaders(200, -1)
+            } else { // byte range requested is ignored
+                exchange.sendResponseHeaders(200, content.size.toLong())
+                exchange.responseBody.write(content)
+            }
+            exchange.close()
+        }
+        createContext("/ranged/") { exchange -> // byte ranges supported, remote file may change after HEAD
+            exchange.responseHeaders.add("Accept-Ranges", "bytes")
+            if (exchange.requestMethod == "HEAD") {
+                exchange.responseHeaders.add("ETag", "\"v1\"")
+                exchange.responseHeaders.add("Content-Length", content.size.toString())
+                exchange.sendResponseHeaders(200, -1)
+                exchange.close()
+                return@createContext
+            }
+            exchange.responseHeaders.add("ETag", rangedEtag)
+            val range = exchange.requestHeaders.getFirst("Range")?.let { RANGE.matchEntire(it) }
+            val ifRange = exchange.requestHeaders.getFirst("If-Range")
+            rangeRequests += "${range?.value} $ifRange"
+            if (range == null || (ifRange != null && ifRange != rangedEtag)) {
+                exchange.sendResponseHeaders(200, content.size.toLong())
+                exchange.responseBody.write(content)
+            } else {
+                val first = range.groupValues[1].toInt() + rangeShift
+                val last = range.groupValues[2].toIntOrNull() ?: content.lastIndex
+                exchange.responseHeaders.add("Content-Range", "bytes $first-$last/${content.size}")
+                exchange.sendResponseHeaders(206, (last - first + 1).toLong())
+                exchange.responseBody.write(content, first, last - first + 1)
+            }
+            exchange.close()
+        }
+        start()
+    }
+
+    private val rangedUrl = "http://127.0.0.1:${server.address.port}/ranged/app.zip"
+
+    private val url = "http://127.0.0.1:${server.address.port}/files/app.zip"
+
+    @AfterEach
+    fun stop() {
+        server.stop(0)
+    }
+
+    @Test
+    fun shouldRestartDownloadWhenByteRangeIsIgnored(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+        val tmp = dir.resolve("app.zip${FileTransferManager.TMP_SUFFIX}").apply { writeBytes(content.copyOf(400)) }
+        FileVersion(size = content.size.toLong(), etag = "\"v1\"").write(File("$tmp${FileTransferManager.VERSION_SUFFIX}"))
+
+        manager(dir).download(url, target)
+
+        assertEquals(String(content), target.readText())
+        assertFalse(tmp.exists())
+        assertEquals(1, requests.count { it == "HEAD /files/app.zip" })
+    }
+
+    @Test
+    fun shouldNotCheckVersionWhenPartialFileIsMissing(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+
+        manager(dir).download(url, target)
+
+        assertEquals(String(content), target.readText())
+        assertEquals(0, requests.count { it == "HEAD /files/app.zip" })
+    }
+
+    @Test
+    fun shouldDetermineVersionWithoutByteRangesSupport(@TempDir dir: File) {
+        val version = manager(dir).http.version(url.replace("app.zip", "plain.zip"))
+
+        assertEquals(FileVersion(etag = "\"v2\""), version)
+    }
+
+    @Test
+    fun shouldResumeDownloadConditionally(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+        partialFile(dir, 400)
+
+        manager(dir).download(rangedUrl, target)
+
+        assertEquals(String(content), target.readText())
+        assertEquals(listOf("bytes=400- \"v1\""), rangeRequests)
+    }
+
+    @Test
+    fun shouldRestartDownloadWhenRemoteFileChanged(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+        partialFile(dir, 400)
+        rangedEtag = "\"v2\""
+
+        manager(dir).download(rangedUrl, target)
+
+        assertEquals(String(content), target.readText())
+        assertEquals(listOf("bytes=400- \"v1\""), rangeRequests)
+    }
+
+    @Test
+    fun shouldRestartDownloadWhenByteRangeIsNotMatching(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+        partialFile(dir, 400)
+        rangeShift = 100
+
+        manager(dir).download(rangedUrl, target)
+
+        assertEquals(String(content), target.readText())
+        assertEquals(listOf("bytes=400- \"v1\"", "null null"), rangeRequests)
+    }
+
+    @Test
+    fun shouldDownloadChunksConditionally(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+
+        chunkedManager(dir).download(rangedUrl, target)
+
+        assertEquals(String(content), target.readText())
+        assertEquals(setOf("bytes=0-499 \"v1\"", "bytes=500-999 \"v1\""), rangeRequests.toSet())
+    }
+
+    @Test
+    fun shouldFailDownloadingChunksWhenRemoteFileChanged(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+        rangedEtag = "\"v2\""
+
+        assertThrows<HttpFileException> { chunkedManager(dir).download(rangedUrl, target) }
+        assertFalse(target.exists())
+    }
+
+    @Test
+    fun shouldFailDownloadingChunksWhenByteRangeIsNotMatching(@TempDir dir: File) {
+        val target = dir.resolve("app.zip")
+        rangeShift = 100
+
+        assertThrows<HttpFileException> { chunkedManager(dir).download(rangedUrl, target) }
+        assertFalse(target.exists())
+    }
+
+    private fun chunkedManager(dir: File) = manager(dir).apply {
+        http.parallelChunks.set(2)
+        http.parallelChunkMinSize.set(100)
+    }
+
+    private fun partialFile(dir: File, size: Int) {
+        val tmp = dir.resolve("app.zip${FileTransferManager.TMP_SUFFIX}").apply { writeBytes(content.copyOf(size)) }
+        FileVersion(size = content.size.toLong(), etag = "\"v1\"").write(File("$tmp${FileTransferManager.VERSION_SUFFIX}"))
+    }
+
+    private fun manager(dir: File) = CommonTesting.common(dir).fileTransfer
+
+    companion object {
+        private val RANGE = Regex("bytes=(\\d+)-(\\d*)")
+    }
+}
@@ -0,0 +1,159 @@
+package com.cognifide.gradle.common.file.transfer.http
+
+import com.cognifide.gradle.common.CommonTesting
+import com.cognifide.gradle.common.http.HttpTransport
+import com.sun.net.httpserver.HttpServer
+import org.apache.http.entity.AbstractHttpEntity
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.ServerSocket
+import java.util.concurrent.CopyOnWriteArrayList
+import kotlin.concurrent.thread
+
+class HttpFileUploadTest {
+
+    private val content = ByteArray(CONTENT_SIZE) { (it % CONTENT_MODULO).toByte() }
+
+    private val bodies = CopyOnWriteArrayList<ByteArray>()
+
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+        createContext("/upload") { exchange ->
+            bodies += exchange.requestBody.readBytes()
+            exchange.sendResponseHeaders(200, -1)
+            exchange.close()
+        }
+        start()
+    }
+
+    private val url = "http://127.0.0.1:${server.address.port}/upload"
+
+    @AfterEach
+    fun stop() {
+        server.stop(0)
+    }
+
+    @Test
+    fun shouldStreamFileAsMultipartBody(@TempDir dir: File) {
+        val http = http(dir)
+        val source = dir.resolve("app.zip").apply { writeBytes(content) }
+
+        http.uploadTo(url, "renamed.zip", source)
+
+        val body = String(bodies.single(), Charsets.ISO_8859_1)
+        assertTrue(body.contains("name=\"file\"; filename=\"renamed.zip\""))
+        assertTrue(body.contains(String(content, Charsets.ISO_8859_1)))
+    }
+
+    @Test
+    fun shouldNotSendFileWhenUnauthorized(@TempDir dir: File) = shouldNotSendFileWhenRejected(dir, "401 Unauthorized")
+
+    @Test
+    fun shouldNotSendFileWhenExpectationFailed(@TempDir dir: File) = shouldNotSendFileWhenRejected(dir, "417 Expectation Failed")
+
+    /**
+     * Server responds immediately after reading request head, so that body would be received only when client sends it anyway.
+     */
+    private fun shouldNotSendFileWhenRejected(dir: File, status: String) {
+        val http = http(dir)
+        val source = dir.resolve("app.zip").apply { writeBytes(content) }
+        var head = ""
+        var bodySize = 0
+        val socket = ServerSocket(0, 0, InetAddress.getLoopbackAddress())
+        val rejecting = thread(isDaemon = true) {
+            socket.accept().use { connection ->
+                connection.soTimeout = SOCKET_TIMEOUT
+                head = readHead(connection.getInputStream())
+                connection.getOutputStream().apply {
+                    write("HTTP/1.1 $status\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".toByteArray())
+                    flush()
+                }
+                bodySize = countBytes(connection.getInputStream())
+            }
+        }
+
+        try {
+            assertThrows<HttpFileException> { http.uploadTo("http://127.0.0.1:${socket.localPort}/upload", source) }
+            rejecting.join(SOCKET_TIMEOUT.toLong())
+        } finally {
+            socket.close()
+        }
+
+        assertTrue(head.contains("Expect: 100-continue", true))
+        assertEquals(0, bodySize)
+    }
+
+    @Test
+    fun shouldFailWhenWritingEntityFailsUsingHttp2(@TempDir dir: File) {
+        val http = http(dir).apply { client.transport.set(HttpTransport.HTTP2) }
+
+        val error = assertThrows<Exception> {
+            http.client.post(url, { checkStatus(it) }) { entity = FailingEntity() }
+        }
+
+        assertTrue(generateSequence<Throwable>(error) { it.cause }.any { it.message.orEmpty().contains("Cannot write request content") })
+        assertTrue(bodies.none { it.size == CONTENT_SIZE })
+    }
+
+    /**
+     * Entity which could be only written and fails in the middle of writing.
+     */
+    private inner class FailingEntity : AbstractHttpEntity() {
+
+        override fun isRepeatable() = false
+
+        override fun getContentLength() = -1L
+
+        override fun getContent(): InputStream = throw UnsupportedOperationException()
+
+        override fun writeTo(out: OutputStream) {
+            out.write(this@HttpFileUploadTest.content, 0, CONTENT_SIZE / 2)
+            throw IOException("Disk read error")
+        }
+
+        override fun isStreaming() = false
+    }
+
+    private fun readHead(input: InputStream): String {
+        val head = StringBuilder()
+        while (!head.endsWith("\r\n\r\n")) {
+            val byte = input.read()
+            if (byte < 0) {
+                break
+            }
+            head.append(byte.toChar())
+        }
+        return head.toString()
+    }
+
+    private fun countBytes(input: InputStream): Int {
+        var count = 0
+        try {
+            while (input.read() >= 0) {
+                count++
+            }
+        } catch (e: IOException) {
+            // connection closed or reset by client
+        }
+        return count
+    }
+
+    private fun http(dir: File) = CommonTesting.common(dir).fileTransfer.http
+
+    companion object {
+        const val CONTENT_SIZE = 1024 * 1024
+
+        const val CONTENT_MODULO = 251
+
+        const val SOCKET_TIMEOUT = 5_000
+    }
+}
@@ -0,0 +1,138 @@
+package com.cognifide.gradle.common.file.transfer.sftp
+
+import org.apache.sshd.client.SshClient
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.lang.reflect.Proxy
+
+class SftpConnectionPoolTest {
+
+    private val created = mutableListOf<StubConnection>()
+
+    private val factory: () -> SftpConnection = { StubConnection().also { created += it }.connection }
+
+    @Test
+    fun shouldReuseConnection() {
+        val pool = pool()
+
+        val first = pool.use(KEY, factory) { it }
+        val second = pool.use(KEY, factory) { it }
+
+        assertSame(first, second)
+        assertEquals(1, created.size)
+        assertFalse(created.single().closed)
+    }
+
+    @Test
+    fun shouldNotShareConnectionBetweenKeys() {
+        val pool = pool()
+
+        val first = pool.use(KEY, factory) { it }
+        val second = pool.use("other", factory) { it }
+
+        assertNotSame(first, second)
+        assertEquals(2, created.size)
+    }
+
+    @Test
+    fun shouldEvictIdleConnection() {
+        val pool = pool()
+        val first = pool.use(KEY, factory) { it }
+        first.lastUsed -= IDLE_TIMEOUT + 1
+
+        val second = pool.use(KEY, factory) { it }
+
+        assertNotSame(first, second)
+        assertTrue(created[0].closed)
+        assertFalse(created[1].closed)
+    }
+
+    @Test
+    fun shouldNotReuseClosedConnection() {
+        val pool = pool()
+        val first = pool.use(KEY, factory) { it }
+        created[0].open = false
+
+        val second = pool.use(KEY, factory) { it }
+
+        assertNotSame(first, second)
+        assertTrue(created[0].closed)
+    }
+
+    @Test
+    fun shouldKeepAtMostMaxIdleConnections() {
+        val pool = pool(maxIdle = 1)
+
+        pool.use(KEY, factory) { pool.use(KEY, factory) {} }
+
+        assertEquals(2, created.size)
+        assertTrue(created[0].closed)
+        assertFalse(created[1].closed)
+        assertSame(created[1].connection, pool.use(KEY, factory) { it })
+    }
+
+    @Test
+    fun shouldNotPoolConnectionAfterFailedAction() {
+        val pool = pool()
+
+        assertThrows<IllegalStateException> { pool.use<Unit>(KEY, factory) { throw IllegalStateException("Read interrupted") } }
+        pool.use(KEY, factory) {}
+
+        assertEquals(2, created.size)
+        assertTrue(created[0].closed)
+        assertFalse(created[1].closed)
+    }
+
+    @Test
+    fun shouldNotPoolConnectionAfterClose() {
+        val pool = pool()
+        pool.use(KEY, factory) {}
+
+        pool.close()
+        pool.use(KEY, factory) {}
+
+        assertEquals(2, created.size)
+        assertTrue(created.all { it.closed })
+    }
+
+    private fun pool(maxIdle: Int = MAX_IDLE) = SftpConnectionPool(IDLE_TIMEOUT, maxIdle, VALIDATE_AFTER_INACTIVITY)
+
+    /**
+     * Connection not connected to any server, but reporting being open until closed.
+     */
+    private class StubConnection {
+
+        var open = true
+
+        var closed = false
+
+        val connection = SftpConnection(SshClient.setUpDefaultClient(), stub(), stub())
+
+        private inline fun <reified T> stub(): T = Proxy.newProxyInstance(T::class.java.classLoader, arrayOf(T::class.java)) { proxy, method, args ->
+            when (method.name) {
+                "isOpen" -> open && !closed
+                "close" -> { closed = true; null }
+                "canonicalPath" -> "/"
+                "hashCode" -> System.identityHashCode(proxy)
+                "equals" -> proxy === args[0]
+                "toString" -> "${T::class.java.simpleName}(stub)"
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as T
+    }
+
+    companion object {
+        const val KEY = "user@localhost:22"
+
+        const val IDLE_TIMEOUT = 60_000L
+
+        const val MAX_IDLE = 4
+
+        const val VALIDATE_AFTER_INACTIVITY = 1_000L
+    }
+}
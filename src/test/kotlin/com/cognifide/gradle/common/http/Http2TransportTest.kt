@@ -0,0 +1,148 @@
+package com.cognifide.gradle.common.http
+
+import com.cognifide.gradle.common.CommonTesting
+import org.apache.http.HttpResponse
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory
+import org.eclipse.jetty.server.HttpConfiguration
+import org.eclipse.jetty.server.HttpConnectionFactory
+import org.eclipse.jetty.server.Request
+import org.eclipse.jetty.server.Server
+import org.eclipse.jetty.server.ServerConnector
+import org.eclipse.jetty.server.handler.AbstractHandler
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+
+/**
+ * Sends requests to local server supporting cleartext HTTP/2 (h2c), so that connections are upgraded by JDK client.
+ */
+class Http2TransportTest {
+
+    private val requests = CopyOnWriteArrayList<Received>()
+
+    private class Received(val protocol: String, val authorization: String?)
+
+    private val connector: ServerConnector
+
+    private val server = Server().apply {
+        val config = HttpConfiguration()
+        addConnector(ServerConnector(this, HttpConnectionFactory(config), HTTP2CServerConnectionFactory(config)))
+        handler = object : AbstractHandler() {
+            override fun handle(target: String, base: Request, request: HttpServletRequest, response: HttpServletResponse) {
+                requests += Received(request.protocol, request.getHeader("Authorization"))
+                when (target) {
+                    "/missing" -> response.setStatus(HttpServletResponse.SC_NOT_FOUND)
+                    else -> {
+                        response.contentType = "application/json"
+                        response.addHeader("X-Custom", "first")
+                        response.addHeader("X-Custom", "second")
+                        response.setContentLength(BODY.length)
+                        response.writer.write(BODY)
+                    }
+                }
+                base.isHandled = true
+            }
+        }
+        start()
+    }.also { connector = it.connectors.single() as ServerConnector }
+
+    private val url = "http://localhost:${connector.localPort}"
+
+    @AfterEach
+    fun stop() {
+        server.stop()
+    }
+
+    @Test
+    fun shouldUseTransportChosen(@TempDir dir: File) {
+        val common = CommonTesting.common(dir)
+
+        val http1 = common.http { get("$url/status") { it.protocolVersion.major } }
+        val http2 = common.http { transport.set(HttpTransport.HTTP2); (1..2).map { get("$url/status") { it.protocolVersion.major } } }
+
+        assertEquals(1, http1)
+        assertEquals(2, http2.last())
+        assertEquals("HTTP/2.0", requests.last().protocol)
+    }
+
+    @Test
+    fun shouldAdaptResponse(@TempDir dir: File) {
+        val common = CommonTesting.common(dir)
+
+        val response = common.http {
+            transport.set(HttpTransport.HTTP2)
+            get("$url/status") { Adapted(it, asString(it)) }
+        }
+
+        assertEquals(200, response.status)
+        assertEquals("OK", response.reason)
+        assertEquals(listOf("first", "second"), response.custom)
+        assertEquals("application/json", response.contentType)
+        assertEquals(BODY.length.toLong(), response.contentLength)
+        assertEquals(BODY, response.body)
+    }
+
+    @Test
+    fun shouldAdaptResponseAsynchronously(@TempDir dir: File) {
+        val common = CommonTesting.common(dir)
+
+        val response = common.http {
+            transport.set(HttpTransport.HTTP2)
+            await(getAsync("$url/status") { Adapted(it, asString(it)) })
+        }
+
+        assertEquals(200, response.status)
+        assertEquals(BODY, response.body)
+    }
+
+    @Test
+    fun shouldFailOnUnexpectedStatus(@TempDir dir: File) {
+        val common = CommonTesting.common(dir)
+
+        val error = assertThrows<ResponseException> { common.http { transport.set(HttpTransport.HTTP2); get("$url/missing") } }
+
+        assertEquals(ResponseException::class.java, error.cause?.javaClass)
+    }
+
+    @Test
+    fun shouldSendCredentials(@TempDir dir: File) {
+        val common = CommonTesting.common(dir)
+
+        common.http {
+            transport.set(HttpTransport.HTTP2)
+            get("$url/status")
+            basicCredentials = "admin" to "secret"
+            get("$url/status")
+            get("$url/status")
+            bearerToken.set("token")
+            get("$url/status")
+            get("$url/status", { checkStatus(it) }) { addHeader("Authorization", "Custom value") }
+        }
+
+        assertNull(requests[0].authorization)
+        assertEquals("Basic ${Base64.getEncoder().encodeToString("admin:secret".toByteArray())}", requests[1].authorization)
+        assertEquals(requests[1].authorization, requests[2].authorization)
+        assertEquals("Bearer token", requests[3].authorization)
+        assertEquals("Custom value", requests[4].authorization)
+    }
+
+    private class Adapted(response: HttpResponse, val body: String) {
+        val status = response.statusLine.statusCode
+        val reason = response.statusLine.reasonPhrase
+        val custom = response.getHeaders("X-Custom").map { it.value }
+        val contentType = response.entity.contentType?.value
+        val contentLength = response.entity.contentLength
+    }
+
+    companion object {
+        const val BODY = """{"status":"ok"}"""
+    }
+}
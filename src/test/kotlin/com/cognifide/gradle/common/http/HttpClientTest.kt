@@ -0,0 +1,228 @@
+package com.cognifide.gradle.common.http
+
+import com.cognifide.gradle.common.CommonExtension
+import com.cognifide.gradle.common.CommonTesting
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import kotlin.concurrent.thread
+
+class HttpClientTest {
+
+    private val requests = CopyOnWriteArrayList<Request>()
+
+    /**
+     * Request received by server (header names are lowercase).
+     */
+    private class Request(val method: String, val path: String, val headers: Map<String, String>, val body: String, val clientPort: Int)
+
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+        createContext("/encoded/") { exchange ->
+            record(exchange, exchange.requestBody)
+            val encoding = exchange.requestURI.path.substringAfterLast("/")
+            exchange.responseHeaders.add("Content-Encoding", encoding)
+            respond(exchange, 200, encode(encoding, TEXT.toByteArray()))
+        }
+        createContext("/echo") { exchange ->
+            val gzip = exchange.requestHeaders.getFirst("Content-Encoding") == "gzip"
+            record(exchange, if (gzip) GZIPInputStream(exchange.requestBody) else exchange.requestBody)
+            respond(exchange, 200, requests.last().body.toByteArray())
+        }
+        start()
+    }
+
+    private val url = "http://127.0.0.1:${server.address.port}"
+
+    @AfterEach
+    fun stop() {
+        server.stop(0)
+    }
+
+    @Test
+    fun shouldDecodeResponse(@TempDir dir: File) = HttpTransport.values().forEach { transport ->
+        val common = common(dir)
+        ENCODINGS_SUPPORTED.forEach { encoding ->
+            assertEquals(TEXT, common.http { this.transport.set(transport); get("$url/encoded/$encoding") { asString(it) } }, "$transport $encoding")
+        }
+        assertTrue(requests.all { it.headers["accept-encoding"].orEmpty().contains("gzip") }, "$transport")
+    }
+
+    @Test
+    fun shouldDecodeResponseAsynchronously(@TempDir dir: File) = HttpTransport.values().forEach { transport ->
+        val common = common(dir)
+        ENCODINGS_SUPPORTED.forEach { encoding ->
+            val text = common.http { this.transport.set(transport); await(getAsync("$url/encoded/$encoding") { asString(it) }) }
+            assertEquals(TEXT, text, "$transport $encoding")
+        }
+        assertTrue(requests.all { it.headers["accept-encoding"].orEmpty().contains("gzip") }, "$transport")
+    }
+
+    @Test
+    fun shouldPassThroughResponseInUnknownEncoding(@TempDir dir: File) = HttpTransport.values().forEach { transport ->
+        val common = common(dir)
+        assertEquals(TEXT, common.http { this.transport.set(transport); get("$url/encoded/$ENCODING_UNKNOWN") { asString(it) } }, "$transport")
+        assertEquals(TEXT, common.http { this.transport.set(transport); await(getAsync("$url/encoded/$ENCODING_UNKNOWN") { asString(it) }) }, "$transport")
+    }
+
+    @Test
+    fun shouldCompressRequestEntity(@TempDir dir: File) = HttpTransport.values().forEach { transport ->
+        val common = common(dir)
+        val file = dir.resolve("request.txt").apply { writeText(TEXT) }
+
+        common.http {
+            this.transport.set(transport)
+            requestCompression.set(true)
+            put("$url/echo", file)
+            post("$url/echo", { checkStatus(it) }) { entity = createEntityGzip(TEXT) }
+        }
+
+        requests.takeLast(2).forEach { request ->
+            assertEquals("gzip", request.headers["content-encoding"], "$transport ${request.method}")
+            assertEquals(TEXT, request.body, "$transport ${request.method}")
+        }
+    }
+
+    @Test
+    fun shouldReuseConnectionWhenResponseIsNotRead(@TempDir dir: File) {
+        val common = common(dir)
+
+        repeat(3) {
+            common.http {
+                connectionPooling.set(true)
+                connectionPoolMaxTotal.set(1)
+                connectionPoolMaxPerRoute.set(1)
+                connectionTimeout.set(POOL_TIMEOUT)
+                get("$url/encoded/$ENCODING_UNKNOWN") { it.statusLine.statusCode } // content is released by client
+            }
+        }
+
+        assertEquals(3, requests.size)
+        assertEquals(1, requests.map { it.clientPort }.distinct().size)
+    }
+
+    @Test
+    fun shouldRequestAsynchronously(@TempDir dir: File) {
+        val common = common(dir)
+
+        val text = common.http { await(postAsync("$url/echo", mapOf("name" to "value")) { asString(it) }) }
+
+        assertEquals("name=value", text)
+        assertEquals("POST", requests.single().method)
+    }
+
+    @Test
+    fun shouldRetryAsynchronousRequestOnIOException(@TempDir dir: File) = DroppingServer(2).use { server ->
+        val common = common(dir)
+
+        val text = common.http { await(getAsync("http://127.0.0.1:${server.localPort}/") { asString(it) }) }
+
+        assertEquals("ok", text)
+        assertEquals(3, server.accepted.get())
+    }
+
+    @Test
+    fun shouldNotRetryAsynchronousRequestWithEntity(@TempDir dir: File) = DroppingServer(2).use { server ->
+        val common = common(dir)
+
+        assertThrows<RequestException> { common.http { await(postAsync("http://127.0.0.1:${server.localPort}/")) } }
+        assertEquals(1, server.accepted.get())
+    }
+
+    /**
+     * Server closing first connections without any response, then responding normally.
+     */
+    private class DroppingServer(private val dropped: Int) : AutoCloseable {
+
+        private val socket = ServerSocket(0, 0, InetAddress.getLoopbackAddress())
+
+        val localPort get() = socket.localPort
+
+        val accepted = AtomicInteger()
+
+        init {
+            thread(isDaemon = true) {
+                while (!socket.isClosed) {
+                    val connection = try {
+                        socket.accept()
+                    } catch (e: IOException) {
+                        break
+                    }
+                    connection.use { respond(it, accepted.incrementAndGet() > dropped) }
+                }
+            }
+        }
+
+        private fun respond(connection: Socket, responding: Boolean) {
+            if (!responding) {
+                return
+            }
+            val input = connection.getInputStream()
+            var head = ""
+            while (!head.endsWith("\r\n\r\n")) {
+                head += input.read().takeIf { it >= 0 }?.toChar() ?: break
+            }
+            connection.getOutputStream().apply {
+                write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok".toByteArray())
+                flush()
+            }
+        }
+
+        override fun close() {
+            socket.close()
+        }
+    }
+
+    private fun record(exchange: HttpExchange, body: InputStream) {
+        requests += Request(
+            exchange.requestMethod,
+            exchange.requestURI.path,
+            exchange.requestHeaders.entries.associate { it.key.lowercase() to it.value.joinToString(",") },
+            body.readBytes().decodeToString(),
+            exchange.remoteAddress.port
+        )
+    }
+
+    private fun respond(exchange: HttpExchange, status: Int, body: ByteArray) {
+        exchange.sendResponseHeaders(status, body.size.toLong())
+        exchange.responseBody.write(body)
+        exchange.close()
+    }
+
+    private fun encode(encoding: String, bytes: ByteArray): ByteArray = ByteArrayOutputStream().also { output ->
+        when (encoding) {
+            "gzip", "x-gzip" -> GZIPOutputStream(output).use { it.write(bytes) }
+            "deflate" -> DeflaterOutputStream(output).use { it.write(bytes) }
+            else -> output.write(bytes)
+        }
+    }.toByteArray()
+
+    private fun common(dir: File): CommonExtension = CommonTesting.common(dir).also { requests.clear() }
+
+    companion object {
+        val TEXT = "Lorem ipsum dolor sit amet. ".repeat(100)
+
+        val ENCODINGS_SUPPORTED = listOf("gzip", "x-gzip", "deflate")
+
+        const val ENCODING_UNKNOWN = "compress-custom"
+
+        const val POOL_TIMEOUT = 2_000
+    }
+}
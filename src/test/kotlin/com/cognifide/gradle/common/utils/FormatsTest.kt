@@ -0,0 +1,49 @@
+package com.cognifide.gradle.common.utils
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class FormatsTest {
+
+    private val json = """
+        {
+          "status": "ok",
+          "skipped": {"nested": [1, 2, {"deep": true}]},
+          "items": [
+            {"name": "first", "tags": ["a", "b"]},
+            {"name": "second", "tags": ["c"]}
+          ],
+          "0": "zero"
+        }
+    """.trimIndent()
+
+    private fun nodeAt(pointer: String) = Formats.asJson(json.byteInputStream(), pointer)
+
+    @Test
+    fun shouldReadJsonNodeAtPointerWhileStreaming() {
+        assertEquals(Formats.asJson(json), nodeAt(""))
+        assertEquals("ok", nodeAt("/status").asText())
+        assertEquals("second", nodeAt("/items/1/name").asText())
+        assertEquals("c", nodeAt("/items/1/tags/0").asText())
+        assertEquals("zero", nodeAt("/0").asText())
+        assertEquals(Formats.asJson(json).at("/items/0"), nodeAt("/items/0"))
+    }
+
+    @Test
+    fun shouldReturnMissingJsonNodeWhenPointerNotMatching() {
+        assertTrue(nodeAt("/missing").isMissingNode)
+        assertTrue(nodeAt("/items/2").isMissingNode)
+        assertTrue(nodeAt("/items/name").isMissingNode)
+        assertTrue(nodeAt("/status/value").isMissingNode)
+    }
+
+    @Test
+    fun shouldParseHumanFileSize() {
+        assertEquals(512L, Formats.fileSizeHumanToBytes("512"))
+        assertEquals(512L, Formats.fileSizeHumanToBytes("512B"))
+        assertEquals(20L * 1024 * 1024, Formats.fileSizeHumanToBytes("20MB"))
+        assertEquals(1536L * 1024 * 1024, Formats.fileSizeHumanToBytes("1.5 GB"))
+        assertEquals(64L * 1024, Formats.fileSizeHumanToBytes("64k"))
+    }
+}
@@ -0,0 +1,59 @@
+package com.cognifide.gradle.common.utils
+
+import org.apache.commons.io.FilenameUtils
+import org.apache.commons.io.IOCase
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class PatternsTest {
+
+    private val paths = listOf(
+        "",
+        "http://example.com/file.zip",
+        "HTTPS://example.com/dir/file.ZIP",
+        "sftp://user@host:22/path/to/file.jar",
+        "group:name:1.0.0@zip",
+        "group:name:1.0.0",
+        "C:/projects/app/.idea/workspace.xml",
+        "/home/user/app/src/main/file___jb_tmp___",
+        "aaa", "ab", "abab", "a*b", "abc?"
+    )
+
+    private val matchers = listOf(
+        "", "*", "**", "?", "http://*", "https://*", "*://*", "*:*:*@*", "*:*:*", "**/*___jb_*___",
+        "**/.idea/**", "*.zip", "*/dir/*.zip", "a*a", "a?", "a*b", "*ab", "ab*ab", "a?c?", "aaa", "AAA"
+    )
+
+    @Test
+    fun shouldMatchSameAsFilenameUtils() {
+        matchers.forEach { matcher ->
+            val pattern = CompiledPattern(matcher)
+            paths.forEach { path ->
+                assertEquals(
+                    FilenameUtils.wildcardMatch(path, matcher, IOCase.INSENSITIVE),
+                    pattern.matches(path),
+                    "Path '$path' and matcher '$matcher'"
+                )
+            }
+        }
+    }
+
+    @Test
+    fun shouldMatchAnyCharsFollowedBySingleChar() {
+        assertTrue(CompiledPattern("*?").matches("abc"))
+        assertTrue(CompiledPattern("*?.zip").matches("file.zip"))
+        assertFalse(CompiledPattern("*?.zip").matches(".zip"))
+    }
+
+    @Test
+    fun shouldRespectExcludes() {
+        val patterns = Patterns.compile("**/*.jar,!**/test/**")
+
+        assertTrue(patterns.matches("/app/build/libs/app.jar"))
+        assertFalse(patterns.matches("/app/build/test/app.jar"))
+        assertFalse(patterns.matches("/app/build/libs/app.zip"))
+        assertTrue(Patterns.wildcard("""C:\app\build\libs\app.jar""", "C:/app/**/*.jar"))
+    }
+}